@@ -0,0 +1,148 @@
+package com.youngops.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.youngops.Block;
+import com.youngops.BlockCodec;
+import com.youngops.Blockchain;
+import com.youngops.ChainParams;
+import com.youngops.Difficulty;
+import com.youngops.Transaction;
+import com.youngops.Wallet;
+
+/**
+ * Measures whole-chain operations over a synthetic chain of signed
+ * transactions: full validation, JSON export and the binary codec. The chain
+ * is mined once per trial at an easy, fixed target.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class ChainBenchmark {
+
+    private static final int TRANSACTIONS_PER_BLOCK = 4;
+
+    @Param({"1000", "10000"})
+    private int blockCount;
+
+    private Path directory;
+    private Blockchain blockchain;
+    private Block sampleBlock;
+    private byte[] sampleEncoding;
+
+    /**
+     * Mines the synthetic chain into a temporary directory.
+     *
+     * @throws IOException if the directory cannot be created.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("chain-benchmark");
+        int bits = Difficulty.fromLeadingZeros(1);
+        blockchain = Blockchain.open(directory, new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE, bits, bits));
+        Wallet wallet = new Wallet();
+        for (int height = 1; height < blockCount; height++) {
+            List<Transaction> transactions = new ArrayList<>(TRANSACTIONS_PER_BLOCK);
+            for (int i = 0; i < TRANSACTIONS_PER_BLOCK; i++) {
+                Transaction tx = new Transaction("Alice", "Bob", height * TRANSACTIONS_PER_BLOCK + i,
+                        wallet.getPublicKey());
+                tx.signTransaction(wallet.getPrivateKey());
+                transactions.add(tx);
+            }
+            Block tip = blockchain.getChain().get(height - 1);
+            blockchain.addBlock(new Block(height, transactions, tip.getHash()));
+        }
+        sampleBlock = blockchain.getChain().get(blockCount - 1);
+        sampleEncoding = BlockCodec.encode(sampleBlock);
+    }
+
+    /**
+     * Closes the chain and deletes its directory.
+     *
+     * @throws IOException if the directory cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        blockchain.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Validates every block, including all signatures.
+     *
+     * @return true if the chain is valid
+     */
+    @Benchmark
+    public boolean validateFull() {
+        return blockchain.validate(true);
+    }
+
+    /**
+     * Builds the whole chain as one JSON string.
+     *
+     * @return the JSON document
+     */
+    @Benchmark
+    public String toJson() {
+        return blockchain.toJson();
+    }
+
+    /**
+     * Streams the whole chain as JSON into a writer that discards it.
+     *
+     * @throws IOException never, the writer discards everything
+     */
+    @Benchmark
+    public void writeJson() throws IOException {
+        blockchain.writeJson(Writer.nullWriter(), false, 0, blockCount);
+    }
+
+    /**
+     * Encodes one block with the binary codec.
+     *
+     * @return the encoded block
+     */
+    @Benchmark
+    public byte[] encodeBlock() {
+        return BlockCodec.encode(sampleBlock);
+    }
+
+    /**
+     * Decodes one block with the binary codec.
+     *
+     * @return the decoded block
+     */
+    @Benchmark
+    public Block decodeBlock() {
+        return BlockCodec.decode(sampleEncoding);
+    }
+}
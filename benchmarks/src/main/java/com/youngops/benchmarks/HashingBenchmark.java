@@ -0,0 +1,70 @@
+package com.youngops.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.youngops.Block;
+import com.youngops.StringUtil;
+import com.youngops.Transaction;
+
+/**
+ * Measures block header hashing and string hashing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class HashingBenchmark {
+
+    @Param({"64", "1024"})
+    private int inputLength;
+
+    private Block block;
+    private String input;
+
+    /**
+     * Builds the block and the input string.
+     */
+    @Setup
+    public void setUp() {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction("Genesis", "System", 0, null));
+        block = new Block(1, transactions, Block.ZERO_HASH);
+        input = "x".repeat(inputLength);
+    }
+
+    /**
+     * Hashes the fixed-layout block header.
+     *
+     * @return the hex encoded hash
+     */
+    @Benchmark
+    public String calculateHash() {
+        return block.calculateHash();
+    }
+
+    /**
+     * Hashes a string of {@code inputLength} characters.
+     *
+     * @return the hex encoded hash
+     */
+    @Benchmark
+    public String applySha256() {
+        return StringUtil.applySha256(input);
+    }
+}
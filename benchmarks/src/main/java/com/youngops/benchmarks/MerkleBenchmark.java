@@ -0,0 +1,73 @@
+package com.youngops.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.youngops.MerkleTree;
+import com.youngops.Transaction;
+
+/**
+ * Measures building Merkle trees of varying size, from transactions and from
+ * leaf digests that are already hashed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class MerkleBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    private int leafCount;
+
+    private List<Transaction> transactions;
+    private byte[] leaves;
+
+    /**
+     * Creates the transactions and random leaf digests.
+     */
+    @Setup
+    public void setUp() {
+        transactions = new ArrayList<>(leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            transactions.add(new Transaction("Genesis", "System", i, null));
+        }
+        leaves = new byte[leafCount * MerkleTree.HASH_LENGTH];
+        new Random(42).nextBytes(leaves);
+    }
+
+    /**
+     * Hashes the transactions and builds the tree above them.
+     *
+     * @return the hex encoded root
+     */
+    @Benchmark
+    public String merkleRootOfTransactions() {
+        return MerkleTree.ofTransactions(transactions).getMerkleRoot();
+    }
+
+    /**
+     * Builds the tree above leaf digests.
+     *
+     * @return the hex encoded root
+     */
+    @Benchmark
+    public String merkleRootOfLeaves() {
+        return new MerkleTree(leaves, leafCount).getMerkleRoot();
+    }
+}
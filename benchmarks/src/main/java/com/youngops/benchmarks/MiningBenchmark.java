@@ -0,0 +1,61 @@
+package com.youngops.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.youngops.Block;
+import com.youngops.Transaction;
+
+/**
+ * Measures mining a block at a fixed difficulty on the shared miner. Each
+ * invocation mines a fresh block, since the nonce search of a block that is
+ * already mined would end at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class MiningBenchmark {
+
+    @Param({"3", "4"})
+    private int difficulty;
+
+    private Block block;
+
+    /**
+     * Builds a new block with a random starting nonce.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction("Genesis", "System", 0, null));
+        block = new Block(1, transactions, Block.ZERO_HASH);
+    }
+
+    /**
+     * Mines the block with {@code difficulty} leading zero hex digits.
+     *
+     * @return the mined block
+     */
+    @Benchmark
+    public Block mineBlock() {
+        block.mineBlock(difficulty);
+        return block;
+    }
+}
@@ -0,0 +1,65 @@
+package com.youngops.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.youngops.Transaction;
+import com.youngops.Wallet;
+
+/**
+ * Measures Ed25519 signing and verification of a transaction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class SignatureBenchmark {
+
+    private Wallet wallet;
+    private Transaction unsigned;
+    private Transaction signed;
+
+    /**
+     * Creates a wallet, an unsigned and a signed transaction.
+     */
+    @Setup
+    public void setUp() {
+        wallet = new Wallet();
+        unsigned = new Transaction("Alice", "Bob", 50, wallet.getPublicKey());
+        signed = new Transaction("Alice", "Bob", 50, wallet.getPublicKey());
+        signed.signTransaction(wallet.getPrivateKey());
+    }
+
+    /**
+     * Signs a transaction.
+     *
+     * @return the transaction
+     */
+    @Benchmark
+    public Transaction signTransaction() {
+        unsigned.signTransaction(wallet.getPrivateKey());
+        return unsigned;
+    }
+
+    /**
+     * Verifies the signature of a transaction.
+     *
+     * @return true if the signature is valid
+     */
+    @Benchmark
+    public boolean verifySignature() {
+        return signed.verifySignature();
+    }
+}
@@ -2,15 +2,16 @@ package com.youngops;
 
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.youngops.exception.HashCalculationRuntimeException;
-
 /**
  * Represents a block in the blockchain.
  */
@@ -18,13 +19,33 @@ public final class Block {
 
     private static final Logger logger = LoggerFactory.getLogger(Block.class);
 
+    /**
+     * Version written at the start of every block header.
+     */
+    public static final int HEADER_VERSION = 2;
+
+    /**
+     * Length of a block header without its trailing nonce: version,
+     * previous hash, merkle root, timestamp and compact target.
+     */
+    static final int HEADER_PREFIX_LENGTH = Integer.BYTES + 32 + 32 + Long.BYTES + Integer.BYTES;
+
+    /**
+     * Previous hash used by the genesis block.
+     */
+    public static final String ZERO_HASH = "0".repeat(64);
+
     private final int index;
     private final long timestamp;
     private final List<Transaction> transactions;
     private final String previousHash;
+    private final String merkleRoot;
+    private int bits;
     private String hash;
     private static final SecureRandom secureRandom = new SecureRandom();
     private long nonce;
+    private transient volatile byte[] headerPrefix;
+    private transient volatile MerkleTree merkleTree;
 
     /**
      * Constructs a new Block.
@@ -37,10 +58,63 @@ public final class Block {
         this.timestamp = System.currentTimeMillis();
         this.transactions = transactions;
         this.previousHash = previousHash;
+        this.merkleTree = MerkleTree.ofTransactions(transactions);
+        this.merkleRoot = merkleTree.getMerkleRoot();
         this.nonce = generateSecureNonce();
         this.hash = calculateHash();
     }
 
+    /**
+     * Reconstructs a block from its stored fields, for example when decoding it
+     * from the binary format. Nothing is recomputed, so a block that was
+     * tampered with keeps its stored hash and merkle root.
+     *
+     * @param index the index of the block
+     * @param timestamp the creation time of the block
+     * @param transactions the list of transactions
+     * @param previousHash the hash of the previous block
+     * @param merkleRoot the merkle root stored in the header
+     * @param bits the compact target the block was mined against
+     * @param nonce the nonce of the block
+     * @param hash the stored hash of the block
+     */
+    Block(int index, long timestamp, List<Transaction> transactions, String previousHash, String merkleRoot,
+            int bits, long nonce, String hash) {
+        this.index = index;
+        this.timestamp = timestamp;
+        this.transactions = transactions;
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.bits = bits;
+        this.nonce = nonce;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates a genesis block holding the single genesis transaction. The
+     * nonce is found by searching upward from the given nonce on the calling
+     * thread, so the same arguments always produce the same block and hash.
+     *
+     * @param timestamp the creation time of the block
+     * @param bits the compact target the block must meet
+     * @param firstNonce the nonce to start searching from
+     * @return the mined genesis block
+     */
+    static Block createGenesis(long timestamp, int bits, long firstNonce) {
+        List<Transaction> transactions = List.of(new Transaction("Genesis", "System", 0, null));
+        String merkleRoot = MerkleTree.ofTransactions(transactions).getMerkleRoot();
+        Block genesis = new Block(0, timestamp, transactions, ZERO_HASH, merkleRoot, bits, firstNonce, null);
+        HeaderHasher hasher = new HeaderHasher(genesis.getHeaderPrefix());
+        int[] target = HeaderHasher.targetWords(bits);
+        long nonce = firstNonce;
+        while (!hasher.meetsTarget(nonce, target)) {
+            nonce = (nonce + 1) & Long.MAX_VALUE;
+        }
+        genesis.nonce = nonce;
+        genesis.hash = genesis.calculateHash(nonce);
+        return genesis;
+    }
+
     /**
      * Generates a secure nonce using a cryptographically strong random number
      * generator. The nonce is an 8-byte long value that is wrapped in a
@@ -55,47 +129,169 @@ public final class Block {
         return Math.abs(ByteBuffer.wrap(nonceBytes).getLong());
     }
 
+    /**
+     * Calculates the merkle root over the hashes of the block's transactions.
+     * The root is stored in the header when the block is constructed, so a
+     * mismatch with the stored root means a transaction was changed
+     * afterwards.
+     *
+     * @return the hex encoded merkle root
+     */
+    public String calculateMerkleRoot() {
+        return MerkleTree.ofTransactions(transactions).getMerkleRoot();
+    }
+
+    /**
+     * Returns the inclusion proof for one of the block's transactions. A new
+     * block keeps the merkle tree it built for its root; a decoded or
+     * deserialized block builds the tree on first use and keeps it.
+     *
+     * @param transactionIndex the position of the transaction in the block
+     * @return the proof linking the transaction to the block's merkle root
+     * @throws IndexOutOfBoundsException if the block has no such transaction
+     */
+    public MerkleProof getMerkleProof(int transactionIndex) {
+        MerkleTree tree = merkleTree;
+        if (tree == null) {
+            tree = MerkleTree.ofTransactions(transactions);
+            merkleTree = tree;
+        }
+        return tree.getProof(transactionIndex);
+    }
+
+    /**
+     * Checks that a transaction is included in a block, given only the merkle
+     * root from the block's header and a proof obtained from
+     * {@link #getMerkleProof(int)}. Costs one hash per level of the tree.
+     *
+     * @param transaction the transaction to check
+     * @param proof the inclusion proof for the transaction
+     * @param merkleRoot the hex encoded merkle root of the block
+     * @return true if the transaction is in the block
+     */
+    public static boolean verifyInclusion(Transaction transaction, MerkleProof proof, String merkleRoot) {
+        return MerkleTree.verifyProof(transaction.getIdBytes(), proof, StringUtil.fromHex(merkleRoot));
+    }
+
     /**
      * Calculates the hash of the block.
      *
      * @return the calculated hash
      */
     public String calculateHash() {
-        try {
-            String dataToHash = previousHash + timestamp + transactions.toString() + nonce;
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(dataToHash.getBytes());
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            String errorMessage = String.format(
-                    "Failed to calculate hash for block %d with previous hash %s, timestamp %d, and nonce %d",
-                    index, previousHash, timestamp, nonce);
-            logger.error(errorMessage, e);
-            throw new HashCalculationRuntimeException(errorMessage, e);
+        return calculateHash(nonce);
+    }
+
+    /**
+     * Calculates the hash the block would have with the given nonce, without
+     * changing the block. Safe to call from several mining threads at once.
+     *
+     * @param nonce the nonce to hash with
+     * @return the calculated hash
+     */
+    String calculateHash(long nonce) {
+        MessageDigest digest = CryptoEngines.sha256();
+        digest.update(getHeaderPrefix());
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            digest.update((byte) (nonce >>> shift));
         }
+        return StringUtil.toHex(digest.digest());
     }
 
     /**
-     * Mines the block with the given difficulty.
+     * Returns the fixed-layout binary header without the nonce. The layout is
+     * the header version, the previous hash, the merkle root, the timestamp and
+     * the compact target, all big-endian. The nonce follows as the last eight
+     * bytes, which lets miners reuse the SHA-256 state of the first 64 bytes.
      *
-     * @param difficulty the difficulty level
+     * @return the header prefix; callers must not modify it
      */
-    public void mineBlock(int difficulty) {
-        String target = new String(new char[difficulty]).replace('\0', '0');
-        logger.info("Mining block with difficulty: {}", difficulty);
-        while (!hash.substring(0, difficulty).equals(target)) {
-            if (nonce == Long.MAX_VALUE) {
-                nonce = generateSecureNonce();
-            } else {
-                nonce++;
-            }
-            hash = calculateHash();
+    byte[] getHeaderPrefix() {
+        byte[] prefix = headerPrefix;
+        if (prefix == null) {
+            prefix = ByteBuffer.allocate(HEADER_PREFIX_LENGTH)
+                    .putInt(HEADER_VERSION)
+                    .put(hashToBytes(previousHash))
+                    .put(hashToBytes(merkleRoot))
+                    .putLong(timestamp)
+                    .putInt(bits)
+                    .array();
+            headerPrefix = prefix;
         }
-        logger.info("Block mined: {}", hash);
+        return prefix;
+    }
+
+    private static byte[] hashToBytes(String hash) {
+        byte[] bytes = StringUtil.fromHex(hash);
+        if (bytes.length != 32) {
+            throw new IllegalArgumentException("Expected a 32-byte hex hash, got: " + hash);
+        }
+        return bytes;
+    }
+
+    /**
+     * Mines the block with the given difficulty on the shared parallel miner.
+     *
+     * @param difficulty the number of leading zero hex digits required
+     */
+    public void mineBlock(int difficulty) {
+        mineBlock(difficulty, BlockMiner.getDefault());
+    }
+
+    /**
+     * Mines the block with the given difficulty on the given miner and stores
+     * the winning nonce and hash in the block.
+     *
+     * @param difficulty the number of leading zero hex digits required
+     * @param miner the miner whose workers search the nonce space
+     */
+    public void mineBlock(int difficulty, BlockMiner miner) {
+        mineBlockToTarget(Difficulty.fromLeadingZeros(difficulty), miner);
+    }
+
+    /**
+     * Mines the block against a compact target on the given miner and stores
+     * the winning nonce and hash in the block.
+     *
+     * @param bits the compact target the hash must not exceed
+     * @param miner the miner whose workers search the nonce space
+     * @see Difficulty
+     */
+    public void mineBlockToTarget(int bits, BlockMiner miner) {
+        this.bits = bits;
+        this.headerPrefix = null;
+        logger.debug("Mining block with target: {}", Integer.toHexString(bits));
+        long minedNonce = miner.mine(this);
+        this.nonce = minedNonce;
+        this.hash = calculateHash(minedNonce);
+        logger.debug("Block mined: {}", hash);
+    }
+
+    /**
+     * Starts mining the block on the given miner and returns at once. When a
+     * nonce is found it is stored in the block together with the hash.
+     * Cancelling the returned future stops the miner's workers.
+     *
+     * @param bits the compact target the hash must not exceed
+     * @param miner the miner whose workers search the nonce space
+     * @param maxAttempts the maximum number of nonces to try
+     * @param timeout how long to search before giving up, or null for no limit
+     * @return a future completed with this block once it is mined
+     * @see BlockMiner#mineAsync(Block, long, Duration)
+     */
+    public CompletableFuture<Block> mineBlockAsync(int bits, BlockMiner miner, long maxAttempts, Duration timeout) {
+        this.bits = bits;
+        this.headerPrefix = null;
+        logger.debug("Mining block asynchronously with target: {}", Integer.toHexString(bits));
+        CompletableFuture<Long> mining = miner.mineAsync(this, maxAttempts, timeout);
+        CompletableFuture<Block> result = mining.thenApply(minedNonce -> {
+            this.nonce = minedNonce;
+            this.hash = calculateHash(minedNonce);
+            logger.debug("Block mined: {}", hash);
+            return this;
+        });
+        result.whenComplete((block, error) -> mining.cancel(false));
+        return result;
     }
 
     /**
@@ -134,6 +330,54 @@ public final class Block {
         return transactions;
     }
 
+    /**
+     * Returns the merkle root committed to in the block header. It is computed
+     * once when the block is constructed.
+     *
+     * @return the hex encoded merkle root
+     */
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    /**
+     * Returns the compact target the block was mined against.
+     *
+     * @return the compact target
+     * @see Difficulty
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Checks that the stored hash satisfies the block's own target. This does
+     * not check that the hash matches the block's contents.
+     *
+     * @return true if the hash does not exceed the target
+     */
+    public boolean hasValidProofOfWork() {
+        return Difficulty.meetsTarget(StringUtil.fromHex(hash), bits);
+    }
+
+    /**
+     * Checks that no transaction appears twice in the block. The merkle tree
+     * pairs the last node of an odd level with itself, so a copy of the block
+     * that repeats its final transactions has the same root and hash; this
+     * check is what tells the two apart.
+     *
+     * @return true if the ids of the block's transactions are distinct
+     */
+    public boolean hasDistinctTransactions() {
+        Set<String> ids = new HashSet<>();
+        for (Transaction tx : transactions) {
+            if (!ids.add(tx.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns the hash of the previous block.
      *
@@ -165,7 +409,9 @@ public final class Block {
         sb.append("Block ").append(index).append(" [\n");
         sb.append("  Timestamp: ").append(timestamp).append("\n");
         sb.append("  Previous Hash: ").append(previousHash).append("\n");
+        sb.append("  Merkle Root: ").append(merkleRoot).append("\n");
         sb.append("  Hash: ").append(hash).append("\n");
+        sb.append("  Target: ").append(Integer.toHexString(bits)).append("\n");
         sb.append("  Nonce: ").append(nonce).append("\n");
         sb.append("  Transactions: \n");
         for (Transaction tx : transactions) {
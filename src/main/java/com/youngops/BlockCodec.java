@@ -0,0 +1,408 @@
+package com.youngops;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Compact binary encoding of blocks and transactions, used for storage and on
+ * the wire.
+ *
+ * <p>
+ * A block is encoded as:
+ * </p>
+ * <pre>
+ * byte     format version
+ * varint   index
+ * long     timestamp
+ * byte[32] previous hash
+ * byte[32] merkle root
+ * varint   compact target
+ * long     nonce
+ * byte[32] hash
+ * varint   transaction count, followed by the transactions
+ * </pre>
+ * <p>
+ * and a transaction as:
+ * </p>
+ * <pre>
+ * varint   sender length, UTF-8 sender
+ * varint   recipient length, UTF-8 recipient
+ * varint   zigzag encoded amount
+ * varint   public key length + 1 (0 when absent), raw X.509 key
+ * varint   signature length + 1 (0 when absent), raw signature
+ * </pre>
+ * <p>
+ * Hashes, keys and signatures are stored as raw bytes rather than hex or
+ * Base64. A decoded block carries exactly the header fields of the encoded one,
+ * so its {@link Block#calculateHash()} matches the original hash. The framed
+ * variants prefix the encoding with its length as a varint so a stream can
+ * hold several blocks back to back.
+ * </p>
+ */
+public final class BlockCodec {
+
+    /**
+     * Version written as the first byte of every encoded block.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int HASH_LENGTH = 32;
+
+    /**
+     * Private constructor to prevent instantiation. Throws
+     * UnsupportedOperationException if called.
+     */
+    private BlockCodec() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Encodes a block.
+     *
+     * @param block the block to encode
+     * @return the encoded block, without a length prefix
+     */
+    public static byte[] encode(Block block) {
+        Encoder out = new Encoder(256 + 192 * block.getTransactions().size());
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarint(block.getIndex());
+        out.writeLong(block.getTimestamp());
+        out.writeHash(block.getPreviousHash());
+        out.writeHash(block.getMerkleRoot());
+        out.writeVarint(block.getBits());
+        out.writeLong(block.getNonce());
+        out.writeHash(block.getHash());
+        List<Transaction> transactions = block.getTransactions();
+        out.writeVarint(transactions.size());
+        for (Transaction tx : transactions) {
+            writeTransaction(out, tx);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a block produced by {@link #encode(Block)}.
+     *
+     * @param bytes the encoded block
+     * @return the decoded block
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     * or go on past the end of the block
+     */
+    public static Block decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Block block = decode(buffer);
+        requireConsumed(buffer, "block");
+        return block;
+    }
+
+    /**
+     * Decodes a block from the remaining bytes of a buffer, advancing its
+     * position past the block.
+     *
+     * @param buffer the buffer positioned at an encoded block
+     * @return the decoded block
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    public static Block decode(ByteBuffer buffer) {
+        try {
+            int version = buffer.get() & 0xff;
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported block format version " + version);
+            }
+            int index = readVarint(buffer);
+            if (index < 0) {
+                throw new IllegalArgumentException("Bad block index " + index);
+            }
+            long timestamp = buffer.getLong();
+            String previousHash = readHash(buffer);
+            String merkleRoot = readHash(buffer);
+            int bits = readVarint(buffer);
+            long nonce = buffer.getLong();
+            String hash = readHash(buffer);
+            int count = readVarint(buffer);
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Bad transaction count " + count);
+            }
+            List<Transaction> transactions = new ArrayList<>(Math.min(count, buffer.remaining()));
+            for (int i = 0; i < count; i++) {
+                transactions.add(readTransaction(buffer));
+            }
+            return new Block(index, timestamp, transactions, previousHash, merkleRoot, bits, nonce, hash);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated block encoding", e);
+        }
+    }
+
+    /**
+     * Writes a block to a buffer, preceded by its length.
+     *
+     * @param block the block to write
+     * @param buffer the buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void write(Block block, ByteBuffer buffer) {
+        byte[] bytes = encode(block);
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed block from a buffer, advancing its position past
+     * the block.
+     *
+     * @param buffer the buffer positioned at a length prefix
+     * @return the decoded block
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     * or the block does not fill its length
+     */
+    public static Block read(ByteBuffer buffer) {
+        int length;
+        try {
+            length = readVarint(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated block length", e);
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Block length " + length + " exceeds the " + buffer.remaining()
+                    + " bytes available");
+        }
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        Block block = decode(slice);
+        requireConsumed(slice, "block");
+        return block;
+    }
+
+    /**
+     * Writes a block to a stream, preceded by its length.
+     *
+     * @param block the block to write
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public static void write(Block block, DataOutput out) throws IOException {
+        byte[] bytes = encode(block);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed block from a stream.
+     *
+     * @param in the stream to read from
+     * @return the decoded block
+     * @throws IOException if reading fails or the stream ends early
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     * or the block does not fill its length
+     */
+    public static Block read(DataInput in) throws IOException {
+        int length = readVarint(in);
+        if (length < 0) {
+            throw new IllegalArgumentException("Bad block length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return decode(bytes);
+    }
+
+    /**
+     * Encodes a single transaction.
+     *
+     * @param transaction the transaction to encode
+     * @return the encoded transaction
+     */
+    public static byte[] encode(Transaction transaction) {
+        Encoder out = new Encoder(192);
+        writeTransaction(out, transaction);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a transaction produced by {@link #encode(Transaction)}.
+     *
+     * @param bytes the encoded transaction
+     * @return the decoded transaction
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     * or go on past the end of the transaction
+     */
+    public static Transaction decodeTransaction(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            Transaction transaction = readTransaction(buffer);
+            requireConsumed(buffer, "transaction");
+            return transaction;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated transaction encoding", e);
+        }
+    }
+
+    private static void writeTransaction(Encoder out, Transaction tx) {
+        out.writeBytes(tx.getSender().getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(tx.getRecipient().getBytes(StandardCharsets.UTF_8));
+        int amount = tx.getAmount();
+        out.writeVarint((amount << 1) ^ (amount >> 31));
+        out.writeOptionalBytes(tx.getSenderPublicKey() == null ? null
+                : Base64.getDecoder().decode(tx.getSenderPublicKey()));
+        out.writeOptionalBytes(tx.getSignature() == null ? null : Base64.getDecoder().decode(tx.getSignature()));
+    }
+
+    private static Transaction readTransaction(ByteBuffer buffer) {
+        String sender = new String(readBytes(buffer, readVarint(buffer)), StandardCharsets.UTF_8);
+        String recipient = new String(readBytes(buffer, readVarint(buffer)), StandardCharsets.UTF_8);
+        int zigzag = readVarint(buffer);
+        int amount = (zigzag >>> 1) ^ -(zigzag & 1);
+        String publicKey = readOptionalBase64(buffer);
+        String signature = readOptionalBase64(buffer);
+        return new Transaction(sender, recipient, amount, publicKey, signature);
+    }
+
+    private static void requireConsumed(ByteBuffer buffer, String what) {
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException(buffer.remaining() + " bytes left over after the " + what);
+        }
+    }
+
+    private static String readOptionalBase64(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length == 0) {
+            return null;
+        }
+        return Base64.getEncoder().encodeToString(readBytes(buffer, length - 1));
+    }
+
+    private static String readHash(ByteBuffer buffer) {
+        return StringUtil.toHex(readBytes(buffer, HASH_LENGTH));
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Bad field length " + length);
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is longer than five bytes");
+    }
+
+    private static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is longer than five bytes");
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Growable byte array the encodings are written into.
+     */
+    private static final class Encoder {
+
+        private byte[] bytes;
+        private int position;
+
+        Encoder(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[position++] = (byte) value;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeHash(String hash) {
+            byte[] raw = StringUtil.fromHex(hash);
+            if (raw.length != HASH_LENGTH) {
+                throw new IllegalArgumentException("Expected a 32-byte hex hash, got: " + hash);
+            }
+            writeRaw(raw);
+        }
+
+        void writeBytes(byte[] value) {
+            writeVarint(value.length);
+            writeRaw(value);
+        }
+
+        void writeOptionalBytes(byte[] value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(value.length + 1);
+            writeRaw(value);
+        }
+
+        void writeRaw(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, position, value.length);
+            position += value.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.youngops;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.youngops.exception.MiningAbortedRuntimeException;
+
+/**
+ * Mines blocks in parallel. The nonce space is handed out to the workers in
+ * disjoint chunks taken from a shared cursor, so no two workers ever try the
+ * same nonce and fast workers simply take more chunks. As soon as one worker
+ * finds a nonce whose hash is within the block's target every other worker
+ * stops at its next check and the winning nonce is reported back to the
+ * block.
+ *
+ * <p>
+ * Each worker hashes through its own {@link HeaderHasher}, so trying a nonce
+ * costs one SHA-256 compression and allocates nothing.
+ * </p>
+ *
+ * <p>
+ * {@link #mineAsync(Block, long, Duration)} runs the same search without
+ * blocking the caller. Its future can be cancelled and can carry an attempt
+ * and a time budget; the workers stop at their next check once the future
+ * completes in any way.
+ * </p>
+ */
+public final class BlockMiner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockMiner.class);
+
+    /**
+     * Number of consecutive nonces a worker claims from the shared cursor at a
+     * time.
+     */
+    static final long CHUNK_SIZE = 1L << 14;
+
+    /**
+     * System property that overrides the worker count of the default miner.
+     */
+    public static final String THREADS_PROPERTY = "dengicoin.miner.threads";
+
+    private static final long NOT_FOUND = -1L;
+
+    private final ExecutorService executor;
+    private final int workers;
+
+    /**
+     * Constructs a miner backed by its own pool of daemon threads.
+     *
+     * @param workers the number of worker threads, usually one per core
+     * @throws IllegalArgumentException if workers is less than one
+     */
+    public BlockMiner(int workers) {
+        this(Executors.newFixedThreadPool(requirePositive(workers), new MinerThreadFactory()), workers);
+    }
+
+    /**
+     * Constructs a miner that submits its workers to the given executor. The
+     * executor must be able to run {@code workers} tasks at the same time.
+     *
+     * @param executor the executor running the mining workers
+     * @param workers the number of workers submitted for each block
+     * @throws IllegalArgumentException if workers is less than one
+     */
+    public BlockMiner(ExecutorService executor, int workers) {
+        this.executor = executor;
+        this.workers = requirePositive(workers);
+    }
+
+    /**
+     * Returns the shared miner, sized to the number of available processors
+     * unless overridden by the {@value #THREADS_PROPERTY} system property.
+     *
+     * @return the shared miner
+     */
+    public static BlockMiner getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the number of workers used for each block.
+     *
+     * @return the number of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Searches for a nonce that gives the block a hash within its compact
+     * target, starting from the block's current nonce. Blocks the calling
+     * thread until a nonce is found.
+     *
+     * @param block the block to mine
+     * @return the winning nonce
+     * @throws IllegalStateException if the calling thread is interrupted
+     */
+    public long mine(Block block) {
+        Job job = new Job(block.getNonce(), Long.MAX_VALUE);
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(() -> {
+                search(block, job);
+                return null;
+            });
+        }
+
+        try {
+            List<Future<Void>> futures = executor.invokeAll(tasks);
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            job.stop();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while mining block " + block.getIndex(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Mining worker failed for block " + block.getIndex(), e.getCause());
+        }
+
+        long nonce = job.winner.get();
+        logger.debug("Block {} mined by {} workers with nonce {}", block.getIndex(), workers, nonce);
+        return nonce;
+    }
+
+    /**
+     * Starts searching for a nonce without a budget and returns at once.
+     *
+     * @param block the block to mine
+     * @return a future completed with the winning nonce
+     * @see #mineAsync(Block, long, Duration)
+     */
+    public CompletableFuture<Long> mineAsync(Block block) {
+        return mineAsync(block, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Starts searching for a nonce on the worker threads and returns at once.
+     * Cancelling the future, or completing it in any other way, stops the
+     * workers.
+     *
+     * @param block the block to mine; its header must not change until the
+     * future completes
+     * @param maxAttempts the maximum number of nonces to try
+     * @param timeout how long to search before giving up, or null to search
+     * until a nonce is found
+     * @return a future completed with the winning nonce, or exceptionally with
+     * a {@link MiningAbortedRuntimeException} when the attempts run out or a
+     * {@link java.util.concurrent.TimeoutException} when the time runs out
+     * @throws IllegalArgumentException if maxAttempts is less than one
+     */
+    public CompletableFuture<Long> mineAsync(Block block, long maxAttempts, Duration timeout) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Mining needs at least one attempt, got " + maxAttempts);
+        }
+        Job job = new Job(block.getNonce(), maxAttempts);
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        future.whenComplete((nonce, error) -> job.stop());
+        if (timeout != null) {
+            future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        AtomicInteger running = new AtomicInteger(workers);
+        Runnable worker = () -> {
+            try {
+                search(block, job);
+                long nonce = job.winner.get();
+                if (nonce != NOT_FOUND) {
+                    future.complete(nonce);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (running.decrementAndGet() == 0 && !future.isDone()) {
+                    future.completeExceptionally(new MiningAbortedRuntimeException(
+                            "No nonce found for block " + block.getIndex() + " in " + maxAttempts + " attempts"));
+                }
+            }
+        };
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(worker);
+            }
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Stops the worker threads. Blocks that are being mined when this is called
+     * are allowed to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Worker loop: claims chunks of nonces from the shared cursor until either
+     * this worker or another one has found a valid nonce, the attempt budget
+     * is used up or the job is stopped.
+     */
+    private static void search(Block block, Job job) {
+        HeaderHasher hasher = new HeaderHasher(block.getHeaderPrefix());
+        int[] target = HeaderHasher.targetWords(block.getBits());
+        ChainMetrics metrics = ChainMetrics.getDefault();
+        while (!job.isDone()) {
+            long start = job.cursor.getAndAdd(CHUNK_SIZE);
+            if (start - job.limit >= 0) {
+                return;
+            }
+            long count = Math.min(CHUNK_SIZE, job.limit - start);
+            long tried = 0;
+            try {
+                while (tried < count) {
+                    // Nonces stay positive; wrapping past Long.MAX_VALUE restarts at zero.
+                    long nonce = (start + tried++) & Long.MAX_VALUE;
+                    if (hasher.meetsTarget(nonce, target)) {
+                        if (job.winner.compareAndSet(NOT_FOUND, nonce)) {
+                            metrics.recordBlockMined();
+                        }
+                        return;
+                    }
+                    if ((tried & 1023) == 0 && job.isDone()) {
+                        return;
+                    }
+                }
+            } finally {
+                // One update per chunk keeps the counter off the per-nonce path.
+                metrics.recordHashes(tried);
+            }
+        }
+    }
+
+    private static int requirePositive(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Miner needs at least one worker, got " + workers);
+        }
+        return workers;
+    }
+
+    /**
+     * The shared state of the workers mining one block.
+     */
+    private static final class Job {
+
+        private final AtomicLong cursor;
+        private final long limit;
+        private final AtomicLong winner = new AtomicLong(NOT_FOUND);
+        private volatile boolean stopped;
+
+        Job(long start, long maxAttempts) {
+            this.cursor = new AtomicLong(start);
+            // The cursor is compared by difference, so the limit may wrap.
+            this.limit = maxAttempts == Long.MAX_VALUE ? start + Long.MAX_VALUE : start + maxAttempts;
+        }
+
+        void stop() {
+            stopped = true;
+        }
+
+        boolean isDone() {
+            return stopped || winner.get() != NOT_FOUND;
+        }
+    }
+
+    /**
+     * Creates named daemon threads so an idle miner never keeps the JVM alive.
+     */
+    private static final class MinerThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+        private final int pool = POOL_COUNTER.incrementAndGet();
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "miner-" + pool + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Lazily creates the shared miner on first use.
+     */
+    private static final class DefaultHolder {
+
+        private static final BlockMiner INSTANCE = new BlockMiner(
+                Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+}
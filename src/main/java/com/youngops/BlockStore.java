@@ -0,0 +1,106 @@
+package com.youngops;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Storage for the blocks of a chain, addressed by height. Blocks can only be
+ * appended at the tip or cut off from the tip.
+ *
+ * <p>
+ * Implementations allow any number of threads to read while one thread
+ * writes; writers are serialized by the caller.
+ * </p>
+ */
+public interface BlockStore extends AutoCloseable {
+
+    /**
+     * Appends a block at the tip of the store. The block is durable when this
+     * method returns.
+     *
+     * @param block the block to append
+     */
+    void append(Block block);
+
+    /**
+     * Returns the block at the given height.
+     *
+     * @param height the height of the block, zero being the genesis block
+     * @return the block
+     * @throws IndexOutOfBoundsException if no block is stored at that height
+     */
+    Block get(int height);
+
+    /**
+     * Returns the number of blocks in the store.
+     *
+     * @return the number of blocks
+     */
+    int size();
+
+    /**
+     * Returns a read-only list of the blocks currently stored. Later appends
+     * are not visible through the list.
+     *
+     * <p>
+     * The default view reads through to the store, so it only stays valid
+     * until the store is truncated below its size.
+     * </p>
+     *
+     * @return the blocks of the store, in height order
+     */
+    default List<Block> snapshot() {
+        int size = size();
+        return new AbstractList<>() {
+
+            @Override
+            public Block get(int height) {
+                Objects.checkIndex(height, size);
+                return BlockStore.this.get(height);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the hash of the block at the given height without necessarily
+     * decoding the whole block.
+     *
+     * @param height the height of the block
+     * @return the hex encoded hash of the block
+     * @throws IndexOutOfBoundsException if no block is stored at that height
+     */
+    String getHash(int height);
+
+    /**
+     * Removes every block at or above the given height.
+     *
+     * @param height the number of blocks to keep
+     * @throws IndexOutOfBoundsException if height is negative or greater than
+     * the size of the store
+     */
+    void truncate(int height);
+
+    /**
+     * Replaces the content of the store with the given blocks.
+     *
+     * @param blocks the blocks to store, in height order
+     */
+    default void replace(List<Block> blocks) {
+        truncate(0);
+        for (Block block : blocks) {
+            append(block);
+        }
+    }
+
+    /**
+     * Releases the resources held by the store.
+     */
+    @Override
+    void close();
+}
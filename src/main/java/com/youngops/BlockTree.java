@@ -0,0 +1,155 @@
+package com.youngops;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The blocks known to the chain that are not on its main branch, keyed by
+ * hash, together with the cumulative work of the main branch. Each side block
+ * records its height and the total work of the chain ending in it, so the
+ * heaviest tip can be chosen without walking back to the genesis block.
+ *
+ * <p>
+ * Side blocks more than {@link #MAX_DEPTH} blocks below the main tip are
+ * pruned, which bounds the memory held by abandoned branches and the depth of
+ * any reorganization.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe; the blockchain serializes updates.
+ * </p>
+ */
+final class BlockTree {
+
+    /**
+     * Depth below the main tip past which side blocks are dropped.
+     */
+    static final int MAX_DEPTH = 100;
+
+    private final Map<String, Node> sideBlocks = new HashMap<>();
+    private BigInteger tipWork = BigInteger.ZERO;
+
+    /**
+     * Returns the cumulative work of the main branch.
+     *
+     * @return the work of every block from the genesis block to the tip
+     */
+    BigInteger getTipWork() {
+        return tipWork;
+    }
+
+    /**
+     * Sets the cumulative work of the main branch.
+     *
+     * @param tipWork the work of every block from the genesis block to the tip
+     */
+    void setTipWork(BigInteger tipWork) {
+        this.tipWork = tipWork;
+    }
+
+    /**
+     * Returns the side block with the given hash.
+     *
+     * @param hash the hex encoded block hash
+     * @return the node, or null if no side block has that hash
+     */
+    Node get(String hash) {
+        return sideBlocks.get(hash);
+    }
+
+    /**
+     * Adds a block to the side branches.
+     *
+     * @param node the block with its height and cumulative work
+     */
+    void add(Node node) {
+        sideBlocks.put(node.block.getHash(), node);
+    }
+
+    /**
+     * Removes a block from the side branches, for example when it joins the
+     * main branch.
+     *
+     * @param hash the hex encoded block hash
+     */
+    void remove(String hash) {
+        sideBlocks.remove(hash);
+    }
+
+    /**
+     * Returns the number of side blocks.
+     *
+     * @return the number of blocks off the main branch
+     */
+    int size() {
+        return sideBlocks.size();
+    }
+
+    /**
+     * Drops side blocks that lie too far below the main tip to ever win.
+     *
+     * @param tipHeight the height of the main tip
+     */
+    void prune(int tipHeight) {
+        sideBlocks.values().removeIf(node -> node.height < tipHeight - MAX_DEPTH);
+    }
+
+    /**
+     * Removes every side block and resets the work of the main branch.
+     */
+    void clear() {
+        sideBlocks.clear();
+        tipWork = BigInteger.ZERO;
+    }
+
+    /**
+     * A block off the main branch.
+     */
+    static final class Node {
+
+        private final Block block;
+        private final int height;
+        private final BigInteger chainWork;
+
+        /**
+         * Constructs a node.
+         *
+         * @param block the block
+         * @param height the height of the block
+         * @param chainWork the cumulative work of the chain ending in the block
+         */
+        Node(Block block, int height, BigInteger chainWork) {
+            this.block = block;
+            this.height = height;
+            this.chainWork = chainWork;
+        }
+
+        /**
+         * Returns the block.
+         *
+         * @return the block
+         */
+        Block getBlock() {
+            return block;
+        }
+
+        /**
+         * Returns the height of the block.
+         *
+         * @return the height
+         */
+        int getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns the cumulative work of the chain ending in the block.
+         *
+         * @return the chain work
+         */
+        BigInteger getChainWork() {
+            return chainWork;
+        }
+    }
+}
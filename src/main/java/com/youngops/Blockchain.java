@@ -1,37 +1,245 @@
 package com.youngops;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.youngops.exception.InsufficientFundsRuntimeException;
+import com.youngops.exception.StaleBlockRuntimeException;
 
 /**
  * The Blockchain class represents a simple blockchain implementation. It uses a
  * singleton pattern to ensure only one instance of the blockchain exists.
+ *
+ * <p>
+ * The blockchain is thread-safe. {@link #getChain()} returns an immutable
+ * snapshot that is read without locking. Blocks are mined outside of any lock
+ * and then appended under a short write lock that also updates the index and
+ * the ledger, so readers keep running while a block is mined. Lookups in the
+ * index and the ledger take the shared read lock.
+ * </p>
+ *
+ * <p>
+ * The blocks live in a {@link BlockStore}. The singleton keeps them in memory;
+ * {@link #open(Path)} creates a chain persisted in memory-mapped segment files
+ * that survives restarts and can grow beyond the heap.
+ * </p>
+ *
+ * <p>
+ * Each block carries a compact proof-of-work target. The target required of a
+ * new block follows from the blocks below it according to the chain's
+ * {@link ChainParams}, which retarget periodically toward a steady block
+ * interval.
+ * </p>
+ *
+ * <p>
+ * Blocks mined elsewhere are offered with {@link #acceptBlock(Block)}. A block
+ * that does not extend the tip is kept on a side branch, and when a side
+ * branch gathers more cumulative work than the main branch the chain
+ * reorganizes onto it. A reorganization undoes and applies only the blocks
+ * above the fork point, in the store, the index and the ledger alike.
+ * </p>
  */
-public class Blockchain {
+public class Blockchain implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(Blockchain.class);
+    /**
+     * Number of leading zero hex digits the default genesis target requires.
+     */
     public static final int DIFFICULTY = 4;
 
-    private List<Block> chain;
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Outcome of offering a mined block with {@link #acceptBlock(Block)}.
+     */
+    public enum Acceptance {
+        /** The block extended the main branch. */
+        EXTENDED,
+        /** The block gave a side branch the most work, and it became the main branch. */
+        REORGANIZED,
+        /** The block was kept on a side branch with no more work than the main branch. */
+        SIDE_BRANCH,
+        /** The block is already known. */
+        DUPLICATE,
+        /** The block's parent is not known. */
+        ORPHAN,
+        /** The block failed validation or forks off too deep in the chain. */
+        INVALID
+    }
+
+    private final BlockStore store;
+
+    private final ChainIndex index;
+
+    private final ChainParams params;
+
+    private final LedgerState ledger = new LedgerState();
+
+    /**
+     * Side branches and the cumulative work of the main branch. Guarded by
+     * the write lock.
+     */
+    private final BlockTree tree = new BlockTree();
+
+    /**
+     * File holding the derived state of a persisted chain, or null for a chain
+     * kept in memory.
+     */
+    private final Path snapshotFile;
+
+    /**
+     * Guards appends to the store together with the index and the ledger.
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Background mining in progress, with the previous hash each template
+     * builds on.
+     */
+    private final Map<CompletableFuture<Block>, String> pendingMining = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes validations, which advance the validated watermark.
+     */
+    private final Object validationLock = new Object();
+
+    private volatile boolean requireFunds = false;
+
+    private volatile BlockMiner miner = BlockMiner.getDefault();
 
-    private static Blockchain instance = null;
+    private volatile SignatureVerifier signatureVerifier = SignatureVerifier.getDefault();
+
+    /**
+     * Index of the highest block known to be valid together with every block
+     * before it. The genesis block is trusted. Guarded by validationLock.
+     */
+    private int validatedHeight = 0;
+
+    /**
+     * Number of blocks replayed on startup because no snapshot covered them.
+     */
+    private final int replayedBlocks;
 
     /**
      * Private constructor to initialize the blockchain with a genesis block.
      */
     private Blockchain() {
-        this.chain = new ArrayList<>();
-        List<Transaction> genesisTransactions = new ArrayList<>();
-        genesisTransactions.add(new Transaction("Genesis", "System", 0, null));
-        Block genesisBlock = new Block(0, genesisTransactions, "0");
-        genesisBlock.mineBlock(DIFFICULTY);
-        this.chain.add(genesisBlock);
-        logger.info("Genesis block created.");
+        this(new MemoryBlockStore(), ChainParams.DEFAULT, null);
+    }
+
+    /**
+     * Initializes the blockchain on top of a block store, adding the genesis
+     * block of the parameters if the store is empty. The index and the ledger
+     * are restored from the snapshot file when it matches the store, and only
+     * the blocks appended after it are replayed.
+     *
+     * @param store the store holding the blocks.
+     * @param params the consensus parameters of the chain.
+     * @param snapshotFile the snapshot of the derived state, or null for none.
+     */
+    private Blockchain(BlockStore store, ChainParams params, Path snapshotFile) {
+        this.store = store;
+        this.params = params;
+        this.index = new ChainIndex(store);
+        this.snapshotFile = snapshotFile;
+        if (store.size() == 0) {
+            store.append(params.getGenesisBlock());
+            logger.info("Genesis block created.");
+        }
+        int replayFrom = 0;
+        if (snapshotFile != null) {
+            ChainSnapshot snapshot = ChainSnapshot.load(snapshotFile, store, index, ledger);
+            if (snapshot != null) {
+                replayFrom = snapshot.getHeight();
+                validatedHeight = snapshot.getValidatedHeight();
+                tree.setTipWork(snapshot.getChainWork());
+                logger.info("Loaded chain snapshot at height {}, replaying {} blocks.", replayFrom,
+                        store.size() - replayFrom);
+            }
+        }
+        for (int height = replayFrom; height < store.size(); height++) {
+            Block block = store.get(height);
+            index.add(height, block);
+            ledger.apply(block);
+            tree.setTipWork(tree.getTipWork().add(Difficulty.work(block.getBits())));
+        }
+        this.replayedBlocks = store.size() - replayFrom;
+        ChainMetrics.getDefault().recordChainHeight(store.size());
+    }
+
+    /**
+     * Returns the number of blocks replayed into the index and the ledger when
+     * the chain was opened, which is every block unless a snapshot covered
+     * them.
+     *
+     * @return the number of replayed blocks
+     */
+    int getReplayedBlockCount() {
+        return replayedBlocks;
+    }
+
+    /**
+     * Opens a blockchain persisted in the given directory, creating it with a
+     * genesis block if the directory holds no blocks yet. The returned
+     * blockchain is independent of the singleton and should be closed when no
+     * longer needed, which writes a snapshot of its index and ledger. The next
+     * open loads that snapshot instead of replaying every block; blocks it
+     * does not cover are validated by the first call to
+     * {@link #validate(boolean)}.
+     *
+     * @param directory the directory holding the block segments.
+     * @return the blockchain backed by the directory.
+     */
+    public static Blockchain open(Path directory) {
+        return open(directory, ChainParams.DEFAULT);
+    }
+
+    /**
+     * Opens a blockchain persisted in the given directory with the given
+     * consensus parameters.
+     *
+     * @param directory the directory holding the block segments.
+     * @param params the consensus parameters of the chain.
+     * @return the blockchain backed by the directory.
+     * @see #open(Path)
+     */
+    public static Blockchain open(Path directory, ChainParams params) {
+        return new Blockchain(new MappedBlockStore(directory), params, directory.resolve(ChainSnapshot.FILE_NAME));
+    }
+
+    /**
+     * Creates a blockchain kept in memory with the given consensus parameters,
+     * independent of the singleton. Several of them can live in one JVM, for
+     * example one per simulated node.
+     *
+     * @param params the consensus parameters of the chain.
+     * @return the new blockchain holding only the genesis block.
+     */
+    public static Blockchain create(ChainParams params) {
+        return new Blockchain(new MemoryBlockStore(), params, null);
     }
 
     /**
@@ -40,83 +248,887 @@ public class Blockchain {
      * @return the singleton instance of the Blockchain.
      */
     public static Blockchain getInstance() {
-        if (instance == null) {
-            instance = new Blockchain();
-        }
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     /**
-     * Returns the list of blocks in the blockchain.
+     * Returns the list of blocks in the blockchain. The list is a read-only
+     * snapshot taken without locking: blocks appended later are not part of
+     * it and blocks a reorganization cuts off stay in it, so it can be
+     * iterated safely while other threads add blocks.
      *
      * @return the list of blocks in the blockchain.
      */
     public List<Block> getChain() {
-        return chain;
+        return store.snapshot();
     }
 
     /**
      * Sets the list of blocks in the blockchain.
      *
+     * The new chain is validated from scratch by the next validation.
+     *
      * @param chain the new list of blocks to set.
      */
     public void setChain(List<Block> chain) {
-        this.chain = chain;
+        List<Block> blocks = new ArrayList<>(chain);
+        synchronized (validationLock) {
+            long stamp = lock.writeLock();
+            try {
+                index.clear();
+                ledger.clear();
+                tree.clear();
+                store.replace(blocks);
+                for (int height = 0; height < blocks.size(); height++) {
+                    index.add(height, blocks.get(height));
+                    ledger.apply(blocks.get(height));
+                    tree.setTipWork(tree.getTipWork().add(Difficulty.work(blocks.get(height).getBits())));
+                }
+                cancelStaleMining(blocks.isEmpty() ? "" : blocks.get(blocks.size() - 1).getHash());
+                ChainMetrics.getDefault().recordChainHeight(blocks.size());
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            this.validatedHeight = 0;
+        }
+    }
+
+    /**
+     * Returns the consensus parameters of the chain.
+     *
+     * @return the chain parameters.
+     */
+    public ChainParams getParams() {
+        return params;
+    }
+
+    /**
+     * Returns the compact target the next block must be mined against.
+     *
+     * @return the compact target of the next block.
+     */
+    public int getNextBits() {
+        List<Block> chain = getChain();
+        return params.bitsAt(chain, chain.size());
+    }
+
+    /**
+     * Sets the miner used to mine new blocks.
+     *
+     * @param miner the miner to use for subsequent blocks.
+     */
+    public void setMiner(BlockMiner miner) {
+        this.miner = miner;
+    }
+
+    /**
+     * Sets the verifier used to check transaction signatures during chain
+     * validation.
+     *
+     * @param signatureVerifier the verifier to use for subsequent validations.
+     */
+    public void setSignatureVerifier(SignatureVerifier signatureVerifier) {
+        this.signatureVerifier = signatureVerifier;
     }
 
     /**
-     * Adds a new block to the blockchain after mining it.
+     * Sets whether blocks whose transactions overspend their sender's balance
+     * are rejected. Off by default, in which case balances may go negative;
+     * {@link GossipNode}s turn it on for their chains.
+     *
+     * @param requireFunds true to reject overspending blocks.
+     */
+    public void setRequireFunds(boolean requireFunds) {
+        this.requireFunds = requireFunds;
+    }
+
+    /**
+     * Adds a new block to the blockchain after mining it. Mining happens
+     * without holding any lock; the block is then appended only if no other
+     * block was added in the meantime.
      *
      * @param newBlock the new block to add.
+     * @throws InsufficientFundsRuntimeException if funds are required and a
+     * transaction of the block overspends.
+     * @throws StaleBlockRuntimeException if the tip changed while this block
+     * was mined, whether by an append or a reorganization.
+     * @throws IllegalArgumentException if the block breaks the coinbase rules.
      */
     public void addBlock(Block newBlock) {
-        newBlock.mineBlock(DIFFICULTY);
-        chain.add(newBlock);
-        logger.info("New block added to the blockchain.");
+        requireValidCoinbase(newBlock);
+        long start = System.nanoTime();
+        int height;
+        int bits;
+        long stamp = lock.readLock();
+        try {
+            height = store.size();
+            bits = params.bitsAt(store.snapshot(), height);
+            if (requireFunds) {
+                ledger.checkBlock(newBlock);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        newBlock.mineBlockToTarget(bits, miner);
+
+        stamp = lock.writeLock();
+        try {
+            String tipHash = store.getHash(store.size() - 1);
+            if (!newBlock.getPreviousHash().equals(tipHash)) {
+                throw new StaleBlockRuntimeException("Tip moved to " + tipHash + " at height " + (store.size() - 1)
+                        + " while block " + newBlock.getIndex() + " was mined.");
+            }
+            if (requireFunds) {
+                ledger.checkBlock(newBlock);
+            }
+            append(newBlock);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        ChainMetrics.getDefault().recordBlockAdded(System.nanoTime() - start, height + 1);
+        logger.debug("New block added to the blockchain.");
+    }
+
+    /**
+     * Mines a block template in the background without a budget and adds it
+     * to the blockchain.
+     *
+     * @param template the block to mine, linked to the current tip.
+     * @return a future completed with the block once it is part of the chain.
+     * @see #addBlockAsync(Block, long, Duration)
+     */
+    public CompletableFuture<Block> addBlockAsync(Block template) {
+        return addBlockAsync(template, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Mines a block template in the background and adds it to the blockchain
+     * once a nonce is found. The caller is never blocked by mining.
+     *
+     * <p>
+     * The returned future is cancelled automatically as soon as another block
+     * becomes the tip, because the template's previous hash is then stale and
+     * the work could only produce an orphan. Cancelling it by hand, or running
+     * out of attempts or time, stops the miner's workers as well. A cancel that
+     * races with the end of mining may still see the block added.
+     * </p>
+     *
+     * @param template the block to mine, whose previous hash must be the hash
+     * of the current tip.
+     * @param maxAttempts the maximum number of nonces to try.
+     * @param timeout how long to mine before giving up, or null for no limit.
+     * @return a future completed with the block once it is part of the chain,
+     * or exceptionally with a {@link StaleBlockRuntimeException} if the
+     * template does not extend the tip, an
+     * {@link InsufficientFundsRuntimeException} if funds are required and a
+     * transaction overspends, an {@link IllegalArgumentException} if the
+     * template breaks the coinbase rules, or the failure reported by the miner.
+     */
+    public CompletableFuture<Block> addBlockAsync(Block template, long maxAttempts, Duration timeout) {
+        long start = System.nanoTime();
+        CompletableFuture<Block> result = new CompletableFuture<>();
+        CompletableFuture<Block> mining;
+        long stamp = lock.readLock();
+        try {
+            requireValidCoinbase(template);
+            String tipHash = store.getHash(store.size() - 1);
+            if (!template.getPreviousHash().equals(tipHash)) {
+                throw new StaleBlockRuntimeException("Block " + template.getIndex() + " does not extend the tip "
+                        + tipHash);
+            }
+            if (requireFunds) {
+                ledger.checkBlock(template);
+            }
+            int bits = params.bitsAt(store.snapshot(), store.size());
+            mining = template.mineBlockAsync(bits, miner, maxAttempts, timeout);
+            // Registered under the read lock, so no tip change can slip in unnoticed.
+            pendingMining.put(result, template.getPreviousHash());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        result.whenComplete((block, error) -> {
+            pendingMining.remove(result);
+            mining.cancel(false);
+        });
+        mining.whenComplete((block, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                return;
+            }
+            try {
+                appendMined(block, result, start);
+                result.complete(block);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Offers a block mined elsewhere, for example by a peer. The block is
+     * checked on its own first: its hash, proof of work, merkle root,
+     * signatures and a timestamp no more than
+     * {@link ChainParams#MAX_FUTURE_DRIFT} ahead of the local clock. It is then
+     * connected to its parent, which may be the tip, an older block of the main
+     * branch or a side block, and must carry the height and target that follow
+     * from that parent and a timestamp no earlier than the
+     * {@link ChainParams#medianTimePast(List, int) median time past} of its
+     * branch.
+     *
+     * <p>
+     * If the block gives its branch more cumulative work than the main branch,
+     * the chain reorganizes: the main blocks above the fork point are undone
+     * and kept as a side branch, and the new branch is applied. The cost is in
+     * proportion to the depth of the reorganization, not the length of the
+     * chain, and only the new blocks are left for the next validation.
+     * </p>
+     *
+     * @param block the mined block.
+     * @return what became of the block.
+     */
+    public Acceptance acceptBlock(Block block) {
+        if (!isWellFormed(block)) {
+            logger.warn("Rejected malformed block {}.", block.getHash());
+            return Acceptance.INVALID;
+        }
+        synchronized (validationLock) {
+            long stamp = lock.writeLock();
+            try {
+                return connect(block);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Returns the cumulative proof of work of the main branch, which a side
+     * branch must exceed to replace it.
+     *
+     * @return the total work from the genesis block to the tip.
+     * @see Difficulty#work(int)
+     */
+    public BigInteger getChainWork() {
+        long stamp = lock.readLock();
+        try {
+            return tree.getTipWork();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks the parts of a block that do not depend on where it goes in the
+     * chain. A block that fails to hash or verify counts as malformed rather
+     * than throwing, since it may come from any peer.
+     */
+    private boolean isWellFormed(Block block) {
+        try {
+            return block.getHash().equals(block.calculateHash()) && block.hasValidProofOfWork()
+                    && block.getMerkleRoot().equals(block.calculateMerkleRoot()) && block.hasDistinctTransactions()
+                    && params.hasValidCoinbase(block)
+                    && block.getTimestamp() <= System.currentTimeMillis() + ChainParams.MAX_FUTURE_DRIFT.toMillis()
+                    && signatureVerifier.verifyAll(block.getTransactions());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Connects a well-formed block to the tree. Called with the validation
+     * lock and the write lock held.
+     */
+    private Acceptance connect(Block block) {
+        String previousHash = block.getPreviousHash();
+        if (index.heightOf(block.getHash()) >= 0 || tree.get(block.getHash()) != null) {
+            return Acceptance.DUPLICATE;
+        }
+        int tipHeight = store.size() - 1;
+        BlockTree.Node parent = tree.get(previousHash);
+        int parentHeight = parent != null ? parent.getHeight() : index.heightOf(previousHash);
+        if (parentHeight < 0) {
+            return Acceptance.ORPHAN;
+        }
+
+        List<Block> sideBlocks = sideBranchTo(parent);
+        int forkHeight = parentHeight - sideBlocks.size();
+        if (!sideBlocks.isEmpty() && (forkHeight < 0 || forkHeight > tipHeight
+                || !store.getHash(forkHeight).equals(sideBlocks.get(0).getPreviousHash()))) {
+            // Part of the branch was pruned, so it no longer reaches the main branch.
+            return Acceptance.ORPHAN;
+        }
+        if (forkHeight < tipHeight - BlockTree.MAX_DEPTH) {
+            logger.warn("Rejected block {} forking off {} blocks below the tip.", block.getHash(),
+                    tipHeight - forkHeight);
+            return Acceptance.INVALID;
+        }
+        int height = parentHeight + 1;
+        List<Block> branch = branchView(forkHeight, sideBlocks);
+        if (block.getIndex() != height || block.getBits() != params.bitsAt(branch, height)) {
+            logger.warn("Rejected block {} with the wrong height or target.", block.getHash());
+            return Acceptance.INVALID;
+        }
+        if (block.getTimestamp() < params.medianTimePast(branch, height)) {
+            logger.warn("Rejected block {} stamped before the median time past.", block.getHash());
+            return Acceptance.INVALID;
+        }
+
+        if (parent == null && parentHeight == tipHeight) {
+            if (requireFunds && !isAffordable(block)) {
+                return Acceptance.INVALID;
+            }
+            append(block);
+            ChainMetrics.getDefault().recordChainHeight(store.size());
+            return Acceptance.EXTENDED;
+        }
+
+        BigInteger parentWork = parent != null ? parent.getChainWork() : workAt(parentHeight);
+        BlockTree.Node node = new BlockTree.Node(block, height, parentWork.add(Difficulty.work(block.getBits())));
+        tree.add(node);
+        if (node.getChainWork().compareTo(tree.getTipWork()) <= 0) {
+            return Acceptance.SIDE_BRANCH;
+        }
+        sideBlocks.add(block);
+        return reorganize(forkHeight, sideBlocks) ? Acceptance.REORGANIZED : Acceptance.INVALID;
+    }
+
+    /**
+     * Moves the main branch onto the given blocks, which follow the block at
+     * the fork height. If funds are required and a block overspends, the old
+     * main branch is restored and the new blocks stay on a side branch, except
+     * the overspending block and anything above it.
+     */
+    private boolean reorganize(int forkHeight, List<Block> newBlocks) {
+        List<BlockTree.Node> detached = detachAbove(forkHeight);
+        for (int i = 0; i < newBlocks.size(); i++) {
+            Block block = newBlocks.get(i);
+            if (requireFunds && !isAffordable(block)) {
+                for (int j = newBlocks.size() - 1; j >= i; j--) {
+                    tree.remove(newBlocks.get(j).getHash());
+                }
+                List<BlockTree.Node> applied = detachAbove(forkHeight);
+                applied.forEach(tree::add);
+                for (int j = detached.size() - 1; j >= 0; j--) {
+                    attach(detached.get(j).getBlock());
+                }
+                return false;
+            }
+            tree.remove(block.getHash());
+            attach(block);
+        }
+        detached.forEach(tree::add);
+        validatedHeight = Math.min(validatedHeight, forkHeight);
+        tree.prune(store.size() - 1);
+        cancelStaleMining(store.getHash(store.size() - 1));
+        ChainMetrics.getDefault().recordChainHeight(store.size());
+        logger.info("Reorganized the chain above height {}: {} blocks replaced by {}.", forkHeight, detached.size(),
+                newBlocks.size());
+        return true;
+    }
+
+    private void requireValidCoinbase(Block block) {
+        if (!params.hasValidCoinbase(block)) {
+            throw new IllegalArgumentException("Block " + block.getIndex() + " breaks the coinbase rules.");
+        }
+    }
+
+    private boolean isAffordable(Block block) {
+        try {
+            ledger.checkBlock(block);
+            return true;
+        } catch (InsufficientFundsRuntimeException e) {
+            logger.warn("Rejected block {}: {}", block.getHash(), e.getMessage());
+            return false;
+        }
     }
 
     /**
-     * Validates the entire blockchain by checking the hashes and signatures of
-     * all blocks and transactions.
+     * Returns the side blocks from the fork point up to and including the
+     * given side block, lowest first.
+     */
+    private List<Block> sideBranchTo(BlockTree.Node node) {
+        List<Block> blocks = new ArrayList<>();
+        for (BlockTree.Node current = node; current != null; current = tree.get(current.getBlock().getPreviousHash())) {
+            blocks.add(current.getBlock());
+        }
+        Collections.reverse(blocks);
+        return blocks;
+    }
+
+    /**
+     * Returns the chain a side branch belongs to: the main blocks up to the
+     * fork height followed by the side blocks.
+     */
+    private List<Block> branchView(int forkHeight, List<Block> sideBlocks) {
+        List<Block> main = store.snapshot();
+        return new AbstractList<Block>() {
+
+            @Override
+            public Block get(int height) {
+                return height <= forkHeight ? main.get(height) : sideBlocks.get(height - forkHeight - 1);
+            }
+
+            @Override
+            public int size() {
+                return forkHeight + 1 + sideBlocks.size();
+            }
+        };
+    }
+
+    /**
+     * Returns the cumulative work of the main branch up to a height, by
+     * subtracting the work of the blocks above it from the tip's.
+     */
+    private BigInteger workAt(int height) {
+        BigInteger work = tree.getTipWork();
+        for (int h = store.size() - 1; h > height; h--) {
+            work = work.subtract(Difficulty.work(store.get(h).getBits()));
+        }
+        return work;
+    }
+
+    /**
+     * Appends a block mined in the background, unless its future was
+     * cancelled or the tip moved on in the meantime.
+     */
+    private void appendMined(Block block, CompletableFuture<Block> result, long start) {
+        long stamp = lock.writeLock();
+        try {
+            if (result.isDone()) {
+                return;
+            }
+            String tipHash = store.getHash(store.size() - 1);
+            if (!block.getPreviousHash().equals(tipHash)) {
+                throw new StaleBlockRuntimeException("Block " + block.getIndex() + " no longer extends the tip "
+                        + tipHash);
+            }
+            pendingMining.remove(result);
+            append(block);
+            ChainMetrics.getDefault().recordBlockAdded(System.nanoTime() - start, store.size());
+            logger.debug("New block added to the blockchain.");
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Appends a mined block to the store, the index and the ledger, and
+     * cancels background mining that no longer extends the tip. Called with
+     * the write lock held.
+     */
+    private void append(Block block) {
+        attach(block);
+        tree.prune(store.size() - 1);
+        cancelStaleMining(block.getHash());
+    }
+
+    /**
+     * Adds a block on top of the main branch in the store, the index, the
+     * ledger and the chain work. Called with the write lock held.
+     */
+    private void attach(Block block) {
+        store.append(block);
+        index.add(store.size() - 1, block);
+        ledger.apply(block);
+        tree.setTipWork(tree.getTipWork().add(Difficulty.work(block.getBits())));
+    }
+
+    /**
+     * Removes the blocks above a height from the main branch, undoing them in
+     * the index, the ledger and the chain work from the tip down and then
+     * truncating the store once. Called with the write lock held.
+     *
+     * @return the removed blocks as side blocks, from the tip down.
+     */
+    private List<BlockTree.Node> detachAbove(int height) {
+        List<BlockTree.Node> detached = new ArrayList<>();
+        for (int h = store.size() - 1; h > height; h--) {
+            Block block = store.get(h);
+            detached.add(new BlockTree.Node(block, h, tree.getTipWork()));
+            ledger.undo(block);
+            index.removeTip(h, block);
+            tree.setTipWork(tree.getTipWork().subtract(Difficulty.work(block.getBits())));
+        }
+        store.truncate(height + 1);
+        return detached;
+    }
+
+    /**
+     * Cancels the background mining of every template that does not extend
+     * the given tip. Called with the write lock held.
+     */
+    private void cancelStaleMining(String tipHash) {
+        pendingMining.forEach((future, previousHash) -> {
+            if (!previousHash.equals(tipHash)) {
+                logger.debug("Cancelling stale mining on top of {}.", previousHash);
+                future.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Returns the balance of an account at the tip of the chain in constant
+     * time.
+     *
+     * @param account the account identifier.
+     * @return the balance of the account.
+     */
+    public long balanceOf(String account) {
+        long stamp = lock.readLock();
+        try {
+            return ledger.balanceOf(account);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks whether the sender of a transaction can afford it at the tip of
+     * the chain, so overspending transactions can be turned away before they
+     * get into a block.
+     *
+     * @param transaction the transaction to check.
+     * @return true if the transaction is affordable.
+     */
+    public boolean isAdmissible(Transaction transaction) {
+        long stamp = lock.readLock();
+        try {
+            return ledger.isAdmissible(transaction);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks whether the sender of a transaction can afford it at the tip of
+     * the chain on top of other spends already picked for the same block.
+     *
+     * @param transaction the transaction to check.
+     * @param pendingDebit the amount the sender already spends in the block.
+     * @return true if the transaction is affordable as well.
+     */
+    public boolean isAdmissible(Transaction transaction, long pendingDebit) {
+        long stamp = lock.readLock();
+        try {
+            return ledger.isAdmissible(transaction, pendingDebit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the block with the given hash in constant time.
+     *
+     * @param hash the hex encoded block hash.
+     * @return the block, or null if the chain holds no block with that hash.
+     */
+    public Block getBlockByHash(String hash) {
+        long stamp = lock.readLock();
+        try {
+            int height = index.heightOf(hash);
+            return height < 0 ? null : store.get(height);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the height of the block with the given hash in constant time.
+     *
+     * @param hash the hex encoded block hash.
+     * @return the height, or -1 if the chain holds no block with that hash.
+     */
+    public int getHeight(String hash) {
+        long stamp = lock.readLock();
+        try {
+            return index.heightOf(hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Finds a transaction by its hash in constant time.
+     *
+     * @param transactionHash the hex encoded hash of the transaction, as
+     * returned by {@link Transaction#calculateHash()}.
+     * @return the location of the transaction, or null if it is not in the
+     * chain.
+     */
+    public TransactionLocation findTransaction(String transactionHash) {
+        long stamp = lock.readLock();
+        try {
+            return index.find(transactionHash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the locations of every transaction sent or received by an
+     * account, in chain order. The cost depends on the number of the account's
+     * transactions, not on the length of the chain.
+     *
+     * @param account the account identifier.
+     * @return the locations of the account's transactions.
+     */
+    public List<TransactionLocation> getTransactionsFor(String account) {
+        long stamp = lock.readLock();
+        try {
+            return index.transactionsOf(account);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Validates the blocks appended since the last successful validation by
+     * checking their hashes, merkle roots, links and transaction signatures.
+     * Blocks up to the validated watermark are not checked again, so after an
+     * append the cost depends only on the number of new blocks.
      *
      * @return true if the blockchain is valid, false otherwise.
+     * @see #isChainValid(boolean)
      */
     public static boolean isChainValid() {
-        Blockchain blockchain = getInstance();
-        List<Block> chain = blockchain.getChain();
+        return getInstance().validate(false);
+    }
+
+    /**
+     * Validates the singleton blockchain.
+     *
+     * @param fullRevalidation true to check every block from the genesis block
+     * onwards, for audits; false to check only the blocks above the validated
+     * watermark.
+     * @return true if the blockchain is valid, false otherwise.
+     * @see #validate(boolean)
+     */
+    public static boolean isChainValid(boolean fullRevalidation) {
+        return getInstance().validate(fullRevalidation);
+    }
+
+    /**
+     * Validates the blockchain by checking the hashes, merkle roots and
+     * signatures of its blocks and transactions.
+     *
+     * <p>
+     * The cheap hash and link checks run first, sequentially. The signatures of
+     * the blocks before the first broken block are then verified in parallel.
+     * The result is the same as checking every block in order, hashes before
+     * signatures.
+     * </p>
+     *
+     * @param fullRevalidation true to check every block from the genesis block
+     * onwards, for audits; false to check only the blocks above the validated
+     * watermark.
+     * @return true if the blockchain is valid, false otherwise.
+     */
+    public boolean validate(boolean fullRevalidation) {
+        synchronized (validationLock) {
+            long start = System.nanoTime();
+            try {
+                return validate(getChain(), fullRevalidation);
+            } finally {
+                ChainMetrics.getDefault().recordValidation(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Validates a snapshot of the chain while holding the validation lock.
+     */
+    private boolean validate(List<Block> chain, boolean fullRevalidation) {
+        int from = fullRevalidation ? 1 : validatedHeight + 1;
 
-        for (int i = 1; i < chain.size(); i++) {
+        List<Transaction> transactions = new ArrayList<>();
+        int firstInvalidBlock = findFirstUnlinkedBlock(chain, from, params, transactions);
+
+        if (!signatureVerifier.verifyAll(transactions)) {
+            logger.warn("Invalid transaction signature detected.");
+            if (fullRevalidation) {
+                validatedHeight = 0;
+            }
+            return false;
+        }
+
+        // Everything before the first broken block has now been checked.
+        validatedHeight = firstInvalidBlock - 1;
+        if (firstInvalidBlock < chain.size()) {
+            return false;
+        }
+
+        logger.debug("Blockchain is valid.");
+        return true;
+    }
+
+    /**
+     * Checks the hash, proof of work, merkle root, distinct transactions,
+     * coinbase and link to the previous block of every block from the given
+     * index onwards. Each block is read once for its own checks, and the target
+     * check reads up to two blocks below it again, as described in
+     * {@link ChainParams#bitsAt(List, int)}.
+     *
+     * @param chain the blocks to check.
+     * @param from the index of the first block to check, at least one.
+     * @param params the parameters deciding the target of each block.
+     * @param transactions receives the transactions of the blocks that pass.
+     * @return the index of the first block failing a check, or the size of the
+     * chain if all blocks pass.
+     */
+    private static int findFirstUnlinkedBlock(List<Block> chain, int from, ChainParams params,
+            List<Transaction> transactions) {
+        Block previousBlock = from < chain.size() ? chain.get(from - 1) : null;
+        for (int i = from; i < chain.size(); i++) {
             Block currentBlock = chain.get(i);
-            Block previousBlock = chain.get(i - 1);
 
             if (!currentBlock.getHash().equals(currentBlock.calculateHash())) {
                 logger.warn("Current block hash is invalid.");
-                return false;
+                return i;
             }
 
-            if (!currentBlock.getPreviousHash().equals(previousBlock.getHash())) {
-                logger.warn("Previous block hash does not match.");
-                return false;
+            if (currentBlock.getBits() != params.bitsAt(chain, i) || !currentBlock.hasValidProofOfWork()) {
+                logger.warn("Block does not meet the required proof-of-work target.");
+                return i;
             }
 
-            for (Transaction tx : currentBlock.getTransactions()) {
-                if (!tx.verifySignature()) {
-                    logger.warn("Invalid transaction signature detected.");
-                    return false;
-                }
+            if (!currentBlock.getMerkleRoot().equals(currentBlock.calculateMerkleRoot())) {
+                logger.warn("Merkle root does not match the block's transactions.");
+                return i;
             }
-        }
 
-        logger.info("Blockchain is valid.");
-        return true;
+            if (!currentBlock.hasDistinctTransactions()) {
+                logger.warn("Block repeats a transaction.");
+                return i;
+            }
+
+            if (!params.hasValidCoinbase(currentBlock)) {
+                logger.warn("Block breaks the coinbase rules.");
+                return i;
+            }
+
+            if (!currentBlock.getPreviousHash().equals(previousBlock.getHash())) {
+                logger.warn("Previous block hash does not match.");
+                return i;
+            }
+            transactions.addAll(currentBlock.getTransactions());
+            previousBlock = currentBlock;
+        }
+        return chain.size();
     }
 
     /**
-     * Converts the blockchain to a JSON string representation.
+     * Converts the blockchain to a JSON string representation. For large
+     * chains prefer {@link #writeJson(Writer, boolean, int, int)}, which does
+     * not hold the whole document in memory.
      *
      * @return the JSON string representation of the blockchain.
      */
     public String toJson() {
-        return new GsonBuilder().setPrettyPrinting().create().toJson(this.chain);
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer, true, getChain());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write blockchain JSON", e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Streams the whole blockchain as a JSON array of blocks to an output
+     * stream in UTF-8. The stream is flushed but not closed.
+     *
+     * @param out the stream to write to.
+     * @param prettyPrint true to indent the output, false for compact output.
+     * @throws IOException if writing fails.
+     */
+    public void writeJson(OutputStream out, boolean prettyPrint) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeJson(writer, prettyPrint, getChain());
+    }
+
+    /**
+     * Streams a range of blocks as a JSON array to a writer. Blocks are read
+     * and serialized one at a time, so memory use does not depend on the
+     * length of the chain. The writer is flushed but not closed.
+     *
+     * @param writer the writer to write to.
+     * @param prettyPrint true to indent the output, false for compact output.
+     * @param fromHeight the height of the first block to write, inclusive.
+     * @param toHeight the height after the last block to write, exclusive.
+     * @throws IOException if writing fails.
+     * @throws IndexOutOfBoundsException if the range is not within the chain.
+     */
+    public void writeJson(Writer writer, boolean prettyPrint, int fromHeight, int toHeight) throws IOException {
+        List<Block> chain = getChain();
+        if (fromHeight < 0 || toHeight > chain.size() || fromHeight > toHeight) {
+            throw new IndexOutOfBoundsException("Invalid block range [" + fromHeight + ", " + toHeight
+                    + ") for a chain of " + chain.size() + " blocks");
+        }
+        writeJson(writer, prettyPrint, chain.subList(fromHeight, toHeight));
+    }
+
+    /**
+     * Streams blocks as a JSON array to a writer, one block at a time.
+     */
+    private static void writeJson(Writer writer, boolean prettyPrint, List<Block> blocks) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        if (prettyPrint) {
+            jsonWriter.setIndent("  ");
+        }
+        jsonWriter.beginArray();
+        for (Block block : blocks) {
+            GSON.toJson(block, Block.class, jsonWriter);
+        }
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+
+    /**
+     * Writes a snapshot of the chain's index, ledger and validated watermark
+     * next to its blocks, so the next {@link #open(Path)} can skip replaying
+     * them. Does nothing for a chain kept in memory.
+     *
+     * @throws com.youngops.exception.BlockStoreRuntimeException if the
+     * snapshot cannot be written.
+     */
+    public void writeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        synchronized (validationLock) {
+            long stamp = lock.readLock();
+            try {
+                ChainSnapshot.write(snapshotFile, store, validatedHeight, tree.getTipWork(), index, ledger);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of a persisted chain and closes the underlying block
+     * store.
+     */
+    @Override
+    public void close() {
+        try {
+            writeSnapshot();
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Holds the singleton, created on first use by the class loader.
+     */
+    private static final class InstanceHolder {
+
+        private static final Blockchain INSTANCE = new Blockchain();
     }
 }
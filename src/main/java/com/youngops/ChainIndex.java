@@ -0,0 +1,294 @@
+package com.youngops;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lookup indexes over the blocks of a chain, updated as blocks are added:
+ * block hash to height, transaction hash to location, and account to the
+ * locations of the transactions it sent or received.
+ *
+ * <p>
+ * All indexes are keyed by 64-bit values in {@link LongLongHashMap}s instead of
+ * boxed maps. Block and transaction hashes are keyed by their first eight
+ * bytes and accounts by a 64-bit hash of the name. A candidate found through a
+ * key is checked against the block store before it is returned, so key
+ * collisions never produce wrong answers. The per-account lists are linked
+ * lists threaded through two flat arrays.
+ * </p>
+ *
+ * <p>
+ * Memory cost: every entry of a hash table takes 32 to 64 bytes, since the
+ * tables are at most half full and double as they grow. That is one entry per
+ * block for the hash index, one per transaction for the transaction index and
+ * one per distinct account. Each transaction also takes two account entries of
+ * 12 bytes in arrays that double as well, so 24 to 48 bytes. A block therefore
+ * costs roughly {@code 32 + 56 * transactions} bytes at best and twice that
+ * right after the tables grow.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe; the blockchain serializes updates.
+ * </p>
+ */
+final class ChainIndex {
+
+    private static final int NO_ENTRY = -1;
+
+    private final BlockStore store;
+    private final LongLongHashMap blockHeights = new LongLongHashMap(1024);
+    private final LongLongHashMap transactionLocations = new LongLongHashMap(1024);
+    private final LongLongHashMap accountHeads = new LongLongHashMap(256);
+    private long[] entryLocations = new long[1024];
+    private int[] entryNext = new int[1024];
+    private int entryCount;
+
+    /**
+     * Constructs an empty index whose lookups are checked against the given
+     * store.
+     *
+     * @param store the store holding the indexed blocks
+     */
+    ChainIndex(BlockStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Indexes a block appended at the given height.
+     *
+     * @param height the height of the block
+     * @param block the block
+     */
+    void add(int height, Block block) {
+        blockHeights.add(hashKey(block.getHash()), height);
+        List<Transaction> transactions = block.getTransactions();
+        for (int position = 0; position < transactions.size(); position++) {
+            Transaction tx = transactions.get(position);
+            long location = new TransactionLocation(height, position).pack();
+            transactionLocations.add(hashKey(tx.getId()), location);
+            if (!tx.isCoinbase()) {
+                addAccountEntry(tx.getSender(), location);
+            }
+            if (!tx.getRecipient().equals(tx.getSender())) {
+                addAccountEntry(tx.getRecipient(), location);
+            }
+        }
+    }
+
+    /**
+     * Removes a block from the index. Blocks must be removed from the tip
+     * down, in the reverse of the order they were added.
+     *
+     * @param height the height of the block
+     * @param block the block
+     */
+    void removeTip(int height, Block block) {
+        List<Transaction> transactions = block.getTransactions();
+        for (int position = transactions.size() - 1; position >= 0; position--) {
+            Transaction tx = transactions.get(position);
+            long location = new TransactionLocation(height, position).pack();
+            if (!tx.getRecipient().equals(tx.getSender())) {
+                removeAccountEntry(tx.getRecipient());
+            }
+            if (!tx.isCoinbase()) {
+                removeAccountEntry(tx.getSender());
+            }
+            transactionLocations.remove(hashKey(tx.getId()), location);
+        }
+        blockHeights.remove(hashKey(block.getHash()), height);
+    }
+
+    /**
+     * Removes every entry.
+     */
+    void clear() {
+        blockHeights.clear();
+        transactionLocations.clear();
+        accountHeads.clear();
+        entryCount = 0;
+    }
+
+    /**
+     * Writes every index so that it can be restored without reading the
+     * blocks again.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        blockHeights.writeTo(out);
+        transactionLocations.writeTo(out);
+        accountHeads.writeTo(out);
+        out.writeInt(entryCount);
+        for (int entry = 0; entry < entryCount; entry++) {
+            out.writeLong(entryLocations[entry]);
+            out.writeInt(entryNext[entry]);
+        }
+    }
+
+    /**
+     * Replaces every index with indexes written by
+     * {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails or the indexes are malformed
+     */
+    void readFrom(DataInput in) throws IOException {
+        blockHeights.readFrom(in);
+        transactionLocations.readFrom(in);
+        accountHeads.readFrom(in);
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Malformed account entry count " + count);
+        }
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(count, 1)) << 1);
+        entryLocations = new long[capacity];
+        entryNext = new int[capacity];
+        for (int entry = 0; entry < count; entry++) {
+            entryLocations[entry] = in.readLong();
+            entryNext[entry] = in.readInt();
+        }
+        entryCount = count;
+    }
+
+    /**
+     * Returns the height of the block with the given hash.
+     *
+     * @param hash the hex encoded block hash
+     * @return the height, or -1 if no indexed block has that hash or the hash
+     * is malformed
+     */
+    int heightOf(String hash) {
+        if (!hasHashKey(hash)) {
+            return -1;
+        }
+        int[] found = {-1};
+        blockHeights.forEach(hashKey(hash), height -> {
+            if (height < store.size() && store.getHash((int) height).equals(hash)) {
+                found[0] = (int) height;
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    /**
+     * Returns the location of the transaction with the given hash.
+     *
+     * @param transactionHash the hex encoded transaction hash
+     * @return the location, or null if no indexed transaction has that hash
+     * or the hash is malformed
+     */
+    TransactionLocation find(String transactionHash) {
+        if (!hasHashKey(transactionHash)) {
+            return null;
+        }
+        TransactionLocation[] found = {null};
+        transactionLocations.forEach(hashKey(transactionHash), packed -> {
+            TransactionLocation location = TransactionLocation.unpack(packed);
+            if (transactionAt(location).getId().equals(transactionHash)) {
+                found[0] = location;
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    /**
+     * Returns the locations of all transactions sent or received by an
+     * account, in chain order.
+     *
+     * @param account the account identifier
+     * @return the locations of the account's transactions
+     */
+    List<TransactionLocation> transactionsOf(String account) {
+        long head = accountHeads.get(accountKey(account));
+        if (head < 0) {
+            return Collections.emptyList();
+        }
+        List<TransactionLocation> locations = new ArrayList<>();
+        Block block = null;
+        for (int entry = (int) head; entry != NO_ENTRY; entry = entryNext[entry]) {
+            TransactionLocation location = TransactionLocation.unpack(entryLocations[entry]);
+            if (block == null || block.getIndex() != location.getHeight()) {
+                block = store.get(location.getHeight());
+            }
+            Transaction tx = block.getTransactions().get(location.getPosition());
+            if (tx.getSender().equals(account) || tx.getRecipient().equals(account)) {
+                locations.add(location);
+            }
+        }
+        Collections.reverse(locations);
+        return locations;
+    }
+
+    private Transaction transactionAt(TransactionLocation location) {
+        return store.get(location.getHeight()).getTransactions().get(location.getPosition());
+    }
+
+    private void addAccountEntry(String account, long location) {
+        if (entryCount == entryLocations.length) {
+            entryLocations = Arrays.copyOf(entryLocations, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        long key = accountKey(account);
+        long head = accountHeads.get(key);
+        entryLocations[entryCount] = location;
+        entryNext[entryCount] = head < 0 ? NO_ENTRY : (int) head;
+        accountHeads.put(key, entryCount);
+        entryCount++;
+    }
+
+    private void removeAccountEntry(String account) {
+        entryCount--;
+        long key = accountKey(account);
+        int next = entryNext[entryCount];
+        if (next == NO_ENTRY) {
+            accountHeads.remove(key);
+        } else {
+            accountHeads.put(key, next);
+        }
+    }
+
+    /**
+     * Checks that a hash starts with the 16 hex digits {@link #hashKey(String)}
+     * reads. A lookup by anything else is a miss rather than an error.
+     */
+    static boolean hasHashKey(String hash) {
+        if (hash == null || hash.length() < 16) {
+            return false;
+        }
+        for (int i = 0; i < 16; i++) {
+            if (Character.digit(hash.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first eight bytes of a hex encoded hash as a long.
+     */
+    static long hashKey(String hash) {
+        return Long.parseUnsignedLong(hash, 0, 16, 16);
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of an account name.
+     */
+    static long accountKey(String account) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < account.length(); i++) {
+            hash ^= account.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,208 @@
+package com.youngops;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runtime counters and latency histograms for mining, signature verification
+ * and chain updates. Recording is lock-free and allocation-free, so the hot
+ * paths update these metrics on every event instead of logging it.
+ *
+ * <p>
+ * The shared instance returned by {@link #getDefault()} is registered with
+ * the platform MBean server, so the metrics can be watched with JConsole or
+ * any JMX client. {@link #dump()} renders the same values as text.
+ * </p>
+ */
+public final class ChainMetrics implements ChainMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainMetrics.class);
+
+    /**
+     * Name under which the shared instance is registered.
+     */
+    public static final String OBJECT_NAME = "com.youngops:type=ChainMetrics";
+
+    private final RateMeter hashes = new RateMeter();
+    private final LongAdder blocksMined = new LongAdder();
+    private final RateMeter signatures = new RateMeter();
+    private final LongAdder signatureFailures = new LongAdder();
+    private final LatencyHistogram verifyLatency = new LatencyHistogram();
+    private final LatencyHistogram addBlockLatency = new LatencyHistogram();
+    private final LatencyHistogram validationDuration = new LatencyHistogram();
+    private volatile int chainHeight;
+
+    /**
+     * Constructs an empty set of metrics that is not registered with JMX.
+     */
+    public ChainMetrics() {
+        // Counters start at zero.
+    }
+
+    /**
+     * Returns the shared metrics, registering them with the platform MBean
+     * server on first use.
+     *
+     * @return the shared metrics
+     */
+    public static ChainMetrics getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Records nonces tried by a miner.
+     *
+     * @param count the number of hashes computed
+     */
+    void recordHashes(long count) {
+        hashes.mark(count);
+    }
+
+    /**
+     * Records that a miner found a nonce.
+     */
+    void recordBlockMined() {
+        blocksMined.increment();
+    }
+
+    /**
+     * Records one signature verification.
+     *
+     * @param nanos how long the verification took
+     * @param valid whether the signature was valid
+     */
+    void recordVerification(long nanos, boolean valid) {
+        signatures.mark(1);
+        verifyLatency.record(nanos);
+        if (!valid) {
+            signatureFailures.increment();
+        }
+    }
+
+    /**
+     * Records a block appended to a chain.
+     *
+     * @param nanos how long adding the block took, including mining
+     * @param height the height of the chain after the append
+     */
+    void recordBlockAdded(long nanos, int height) {
+        addBlockLatency.record(nanos);
+        chainHeight = height;
+    }
+
+    /**
+     * Records a chain height without timing, for example after a chain was
+     * loaded or replaced.
+     *
+     * @param height the number of blocks in the chain
+     */
+    void recordChainHeight(int height) {
+        chainHeight = height;
+    }
+
+    /**
+     * Records a full chain validation.
+     *
+     * @param nanos how long the validation took
+     */
+    void recordValidation(long nanos) {
+        validationDuration.record(nanos);
+    }
+
+    @Override
+    public long getHashesTried() {
+        return hashes.getCount();
+    }
+
+    @Override
+    public double getHashRate() {
+        return hashes.getOneMinuteRate();
+    }
+
+    @Override
+    public long getBlocksMined() {
+        return blocksMined.sum();
+    }
+
+    @Override
+    public long getSignaturesVerified() {
+        return signatures.getCount();
+    }
+
+    @Override
+    public long getSignatureFailures() {
+        return signatureFailures.sum();
+    }
+
+    @Override
+    public double getSignatureRate() {
+        return signatures.getOneMinuteRate();
+    }
+
+    @Override
+    public LatencySnapshot getVerifyLatency() {
+        return verifyLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getAddBlockLatency() {
+        return addBlockLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getValidationDuration() {
+        return validationDuration.snapshot();
+    }
+
+    @Override
+    public int getChainHeight() {
+        return chainHeight;
+    }
+
+    @Override
+    public String dump() {
+        PublicKeyCache keys = PublicKeyCache.getDefault();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "hashes tried: %d (%.0f/s)%n", getHashesTried(), getHashRate()));
+        sb.append("blocks mined: ").append(getBlocksMined()).append(System.lineSeparator());
+        sb.append(String.format(Locale.ROOT, "signatures verified: %d (%.0f/s), failed: %d%n",
+                getSignaturesVerified(), getSignatureRate(), getSignatureFailures()));
+        sb.append("verify latency: ").append(getVerifyLatency()).append(System.lineSeparator());
+        sb.append("add block latency: ").append(getAddBlockLatency()).append(System.lineSeparator());
+        sb.append("validation duration: ").append(getValidationDuration()).append(System.lineSeparator());
+        sb.append("chain height: ").append(getChainHeight()).append(System.lineSeparator());
+        sb.append("public key cache: ").append(keys.getHitCount()).append(" hits, ")
+                .append(keys.getMissCount()).append(" misses");
+        return sb.toString();
+    }
+
+    private static ChainMetrics register(ChainMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to register chain metrics with JMX.", e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Holds the shared metrics so they are created and registered on first
+     * use.
+     */
+    private static final class DefaultHolder {
+
+        private static final ChainMetrics INSTANCE = register(new ChainMetrics());
+    }
+}
@@ -0,0 +1,86 @@
+package com.youngops;
+
+/**
+ * The JMX view of {@link ChainMetrics}, registered as
+ * {@value ChainMetrics#OBJECT_NAME}. Rates are one-minute moving averages in
+ * events per second and latencies are in microseconds.
+ */
+public interface ChainMetricsMXBean {
+
+    /**
+     * Returns the number of nonces tried by all miners.
+     *
+     * @return the number of hashes computed while mining
+     */
+    long getHashesTried();
+
+    /**
+     * Returns the mining hash rate.
+     *
+     * @return hashes per second
+     */
+    double getHashRate();
+
+    /**
+     * Returns the number of blocks for which a nonce was found.
+     *
+     * @return the number of mined blocks
+     */
+    long getBlocksMined();
+
+    /**
+     * Returns the number of signatures checked.
+     *
+     * @return the number of signature verifications
+     */
+    long getSignaturesVerified();
+
+    /**
+     * Returns the number of signatures that did not verify.
+     *
+     * @return the number of failed verifications
+     */
+    long getSignatureFailures();
+
+    /**
+     * Returns the signature verification rate.
+     *
+     * @return verifications per second
+     */
+    double getSignatureRate();
+
+    /**
+     * Returns the latency of single signature verifications.
+     *
+     * @return the latency summary
+     */
+    LatencySnapshot getVerifyLatency();
+
+    /**
+     * Returns the latency of adding a block, including mining it.
+     *
+     * @return the latency summary
+     */
+    LatencySnapshot getAddBlockLatency();
+
+    /**
+     * Returns the duration of full chain validations.
+     *
+     * @return the latency summary
+     */
+    LatencySnapshot getValidationDuration();
+
+    /**
+     * Returns the height of the most recently extended chain.
+     *
+     * @return the number of blocks in the chain
+     */
+    int getChainHeight();
+
+    /**
+     * Returns every metric as human-readable text, one per line.
+     *
+     * @return the metrics dump
+     */
+    String dump();
+}
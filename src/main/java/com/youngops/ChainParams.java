@@ -0,0 +1,213 @@
+package com.youngops;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The consensus parameters that decide how hard each block must be to mine
+ * and how many new funds it may issue.
+ *
+ * <p>
+ * Every {@link #getRetargetInterval() retarget interval} blocks the target is
+ * scaled by how long the previous interval took compared with the intended
+ * {@link #getBlockInterval() block interval}, so the block rate stays steady
+ * as mining capacity comes and goes. Between retargets every block carries
+ * the target of its parent.
+ * </p>
+ */
+public final class ChainParams {
+
+    /**
+     * Creation time of every genesis block, fixed so that all nodes derive the
+     * same genesis block from the same parameters.
+     */
+    public static final long GENESIS_TIMESTAMP = 1_704_067_200_000L;
+
+    /**
+     * Hash of the genesis block under the {@link #DEFAULT} parameters.
+     */
+    public static final String DEFAULT_GENESIS_HASH =
+            "00002ecc752b47157afc15415dcb232a747ea2ba186f0e2f3af19fd868da4e62";
+
+    /**
+     * Most a block's coinbase transaction may issue.
+     */
+    public static final int BLOCK_REWARD = 50;
+
+    /**
+     * Furthest a block offered by a peer may be stamped ahead of the local
+     * clock.
+     */
+    public static final Duration MAX_FUTURE_DRIFT = Duration.ofHours(2);
+
+    /**
+     * Number of blocks below a new block whose median timestamp it may not
+     * precede.
+     */
+    public static final int MEDIAN_TIME_SPAN = 11;
+
+    /**
+     * First nonce that meets the default initial target, precomputed so the
+     * default genesis block costs a single hash to create.
+     */
+    private static final long DEFAULT_GENESIS_NONCE = 82_598L;
+
+    /**
+     * Parameters used by default: start at {@link Blockchain#DIFFICULTY}
+     * leading zero hex digits and aim for one block per second, retargeting
+     * every ten blocks.
+     */
+    public static final ChainParams DEFAULT = new ChainParams(Duration.ofSeconds(1), 10,
+            Difficulty.fromLeadingZeros(Blockchain.DIFFICULTY), Difficulty.fromLeadingZeros(1));
+
+    private final Duration blockInterval;
+    private final int retargetInterval;
+    private final int initialBits;
+    private final int limitBits;
+    private volatile Block genesisBlock;
+
+    /**
+     * Constructs the parameters.
+     *
+     * @param blockInterval the intended time between blocks
+     * @param retargetInterval the number of blocks between target adjustments
+     * @param initialBits the compact target of the genesis block
+     * @param limitBits the easiest compact target a retarget may reach
+     * @throws IllegalArgumentException if the interval or the retarget interval
+     * is not positive
+     */
+    public ChainParams(Duration blockInterval, int retargetInterval, int initialBits, int limitBits) {
+        if (blockInterval.toMillis() < 1 || retargetInterval < 1) {
+            throw new IllegalArgumentException("Block and retarget intervals must be positive, got "
+                    + blockInterval + " and " + retargetInterval);
+        }
+        this.blockInterval = blockInterval;
+        this.retargetInterval = retargetInterval;
+        this.initialBits = initialBits;
+        this.limitBits = limitBits;
+    }
+
+    /**
+     * Returns the intended time between blocks.
+     *
+     * @return the block interval
+     */
+    public Duration getBlockInterval() {
+        return blockInterval;
+    }
+
+    /**
+     * Returns the number of blocks between target adjustments.
+     *
+     * @return the retarget interval
+     */
+    public int getRetargetInterval() {
+        return retargetInterval;
+    }
+
+    /**
+     * Returns the compact target of the genesis block.
+     *
+     * @return the initial compact target
+     */
+    public int getInitialBits() {
+        return initialBits;
+    }
+
+    /**
+     * Returns the easiest compact target a retarget may reach.
+     *
+     * @return the limit compact target
+     */
+    public int getLimitBits() {
+        return limitBits;
+    }
+
+    /**
+     * Returns the genesis block of chains using these parameters. It is mined
+     * against the initial target with a fixed timestamp, starting from nonce
+     * zero, so it is the same on every run. The default parameters use a
+     * precomputed nonce and skip the search.
+     *
+     * @return the genesis block; callers must not modify it
+     */
+    public Block getGenesisBlock() {
+        Block genesis = genesisBlock;
+        if (genesis == null) {
+            boolean precomputed = initialBits == DEFAULT.initialBits;
+            genesis = Block.createGenesis(GENESIS_TIMESTAMP, initialBits, precomputed ? DEFAULT_GENESIS_NONCE : 0);
+            genesisBlock = genesis;
+        }
+        return genesis;
+    }
+
+    /**
+     * Checks the coinbase rules of a block: only its first transaction may be
+     * a coinbase, naming the block's height and issuing between zero and
+     * {@link #BLOCK_REWARD}.
+     *
+     * @param block the block to check
+     * @return true if the block holds no coinbase or a valid one
+     */
+    public boolean hasValidCoinbase(Block block) {
+        List<Transaction> transactions = block.getTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction tx = transactions.get(i);
+            if (!tx.isCoinbase()) {
+                continue;
+            }
+            if (i != 0 || !tx.getSender().equals(Transaction.COINBASE_PREFIX + block.getIndex())
+                    || tx.getAmount() < 0 || tx.getAmount() > BLOCK_REWARD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the median timestamp of the {@link #MEDIAN_TIME_SPAN} blocks
+     * below a height, or of all of them near the genesis block. A block at
+     * that height may not be stamped earlier, so no miner can drag the clock
+     * of the chain backwards. Reads at most {@link #MEDIAN_TIME_SPAN} blocks.
+     *
+     * @param chain the chain, holding at least the blocks below the height
+     * @param height the height of the block, at least one
+     * @return the median time past in milliseconds since the epoch
+     */
+    public long medianTimePast(List<Block> chain, int height) {
+        int first = Math.max(0, height - MEDIAN_TIME_SPAN);
+        long[] timestamps = new long[height - first];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = chain.get(first + i).getTimestamp();
+        }
+        Arrays.sort(timestamps);
+        return timestamps[timestamps.length / 2];
+    }
+
+    /**
+     * Computes the compact target required of the block at a given height from
+     * the blocks below it. Reads at most two earlier blocks.
+     *
+     * @param chain the chain, holding at least the blocks below the height
+     * @param height the height of the block
+     * @return the compact target the block must carry
+     */
+    public int bitsAt(List<Block> chain, int height) {
+        if (height == 0) {
+            return initialBits;
+        }
+        Block parent = chain.get(height - 1);
+        if (height % retargetInterval != 0) {
+            return parent.getBits();
+        }
+        // The genesis timestamp is fixed in the past, so the genesis block takes no part in retargeting.
+        int first = Math.max(1, height - 1 - retargetInterval);
+        long actual = parent.getTimestamp() - chain.get(first).getTimestamp();
+        long expected = (height - 1 - first) * blockInterval.toMillis();
+        if (expected <= 0) {
+            return parent.getBits();
+        }
+        return Difficulty.retarget(parent.getBits(), actual, expected, limitBits);
+    }
+}
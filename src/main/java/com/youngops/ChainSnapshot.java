@@ -0,0 +1,229 @@
+package com.youngops;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.youngops.exception.BlockStoreRuntimeException;
+
+/**
+ * A file holding the state derived from a persisted chain: the height and hash
+ * of its tip, the validated watermark, the cumulative work, the
+ * {@link ChainIndex} and the {@link LedgerState}. Loading it replaces
+ * replaying every block on startup, so opening a chain costs time in
+ * proportion to the snapshot, plus the blocks appended after the snapshot was
+ * written.
+ *
+ * <p>
+ * The file is laid out as:
+ * </p>
+ * <pre>
+ * int    magic "DGCS"
+ * int    format version
+ * int    height, the number of blocks covered
+ * byte[] 32-byte hash of the block at height - 1
+ * int    validated watermark
+ * int    length of the cumulative work, then its big-endian bytes
+ * ...    the chain index
+ * ...    the ledger
+ * int    CRC32C of everything above
+ * </pre>
+ *
+ * <p>
+ * A snapshot is used only if its checksum matches and the store still holds
+ * the block it ends at. The checksum is verified over the whole file before
+ * anything is parsed, so a damaged size field cannot make the loader allocate
+ * tables the file never held. Snapshots are written to a temporary file and then
+ * moved into place, so a crash leaves the previous snapshot intact.
+ * </p>
+ */
+final class ChainSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainSnapshot.class);
+
+    /**
+     * Name of the snapshot file next to the block segments.
+     */
+    static final String FILE_NAME = "chain.snapshot";
+
+    private static final int MAGIC = 0x44474353;
+    private static final int FORMAT_VERSION = 2;
+
+    private final int height;
+    private final int validatedHeight;
+    private final BigInteger chainWork;
+
+    private ChainSnapshot(int height, int validatedHeight, BigInteger chainWork) {
+        this.height = height;
+        this.validatedHeight = validatedHeight;
+        this.chainWork = chainWork;
+    }
+
+    /**
+     * Returns the number of blocks whose state the snapshot holds.
+     *
+     * @return the height covered by the snapshot
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the validated watermark at the time the snapshot was written.
+     *
+     * @return the height of the last validated block
+     */
+    int getValidatedHeight() {
+        return validatedHeight;
+    }
+
+    /**
+     * Returns the cumulative work of the blocks covered by the snapshot.
+     *
+     * @return the chain work
+     */
+    BigInteger getChainWork() {
+        return chainWork;
+    }
+
+    /**
+     * Writes the state of the first {@code height} blocks of a store.
+     *
+     * @param file the snapshot file
+     * @param store the store the state was derived from
+     * @param validatedHeight the validated watermark
+     * @param chainWork the cumulative work of the blocks
+     * @param index the index over the blocks
+     * @param ledger the balances after the blocks
+     * @throws BlockStoreRuntimeException if the snapshot cannot be written
+     */
+    static void write(Path file, BlockStore store, int validatedHeight, BigInteger chainWork, ChainIndex index,
+            LedgerState ledger) {
+        int height = store.size();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16);
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(height);
+            out.write(StringUtil.fromHex(store.getHash(height - 1)));
+            out.writeInt(validatedHeight);
+            byte[] work = chainWork.toByteArray();
+            out.writeInt(work.length);
+            out.write(work);
+            index.writeTo(out);
+            ledger.writeTo(out);
+            // The checksum itself is not part of what it covers.
+            new DataOutputStream(raw).writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new BlockStoreRuntimeException("Failed to write chain snapshot " + temporary, e);
+        }
+        try {
+            move(temporary, file);
+        } catch (IOException e) {
+            throw new BlockStoreRuntimeException("Failed to replace chain snapshot " + file, e);
+        }
+        logger.debug("Wrote chain snapshot at height {} to {}.", height, file);
+    }
+
+    /**
+     * Restores the index and the ledger from a snapshot of the given store.
+     * When the snapshot is missing, damaged or does not match the store, the
+     * index and the ledger are left empty and null is returned.
+     *
+     * @param file the snapshot file
+     * @param store the store the snapshot should describe
+     * @param index the index to restore
+     * @param ledger the ledger to restore
+     * @return the loaded snapshot, or null if it cannot be used
+     */
+    static ChainSnapshot load(Path file, BlockStore store, ChainIndex index, LedgerState ledger) {
+        try {
+            verifyChecksum(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Ignoring damaged chain snapshot {}: {}", file, e.toString());
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.warn("Ignoring chain snapshot {} with an unknown format.", file);
+                return null;
+            }
+            int height = in.readInt();
+            byte[] tipHash = in.readNBytes(32);
+            int validatedHeight = in.readInt();
+            if (height < 1 || height > store.size() || !StringUtil.toHex(tipHash).equals(store.getHash(height - 1))) {
+                logger.warn("Ignoring chain snapshot {} that does not match the stored blocks.", file);
+                return null;
+            }
+            int workLength = in.readInt();
+            if (workLength < 1 || workLength > 64) {
+                throw new IOException("Malformed chain work length " + workLength);
+            }
+            BigInteger chainWork = new BigInteger(in.readNBytes(workLength));
+            index.readFrom(in);
+            ledger.readFrom(in);
+            return new ChainSnapshot(height, Math.min(validatedHeight, height - 1), chainWork);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring damaged chain snapshot {}: {}", file, e.toString());
+            index.clear();
+            ledger.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Checks the trailing checksum against the rest of the file, reading it
+     * in fixed-size chunks.
+     *
+     * @throws IOException if the file cannot be read or the checksum does not
+     * match
+     */
+    private static void verifyChecksum(Path file) throws IOException {
+        long length = Files.size(file);
+        if (length < Integer.BYTES) {
+            throw new IOException("Snapshot of " + length + " bytes is too short");
+        }
+        CRC32C crc = new CRC32C();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+                DataInputStream in = new DataInputStream(raw)) {
+            byte[] chunk = new byte[1 << 16];
+            long remaining = length - Integer.BYTES;
+            while (remaining > 0) {
+                int read = (int) Math.min(chunk.length, remaining);
+                in.readFully(chunk, 0, read);
+                crc.update(chunk, 0, read);
+                remaining -= read;
+            }
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Checksum mismatch");
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.youngops;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.Signature;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import com.youngops.exception.CryptoRuntimeException;
+
+/**
+ * Per-thread cryptographic engines shared by blocks, transactions, wallets and
+ * merkle trees. Looking up an engine through the JCA walks the provider list
+ * on every call, so each thread creates its engines once and then reuses
+ * them; what remains per operation is the cryptographic work itself.
+ *
+ * <p>
+ * The BouncyCastle provider is registered the first time this class is used,
+ * so callers never need to register it themselves. Engines are not
+ * thread-safe and must not be handed to other threads. Each caller must finish
+ * with an engine, by calling {@code digest()}, {@code sign()} or
+ * {@code verify()}, before anything else on the same thread uses it.
+ * </p>
+ */
+final class CryptoEngines {
+
+    /**
+     * Name of the provider that supplies the signing engines.
+     */
+    static final String PROVIDER = BouncyCastleProvider.PROVIDER_NAME;
+
+    static {
+        if (Security.getProvider(PROVIDER) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal
+            .withInitial(() -> create("SHA-256 digest", () -> MessageDigest.getInstance("SHA-256")));
+    private static final ThreadLocal<Signature> SIGNATURES = ThreadLocal.withInitial(() -> create("signature engine",
+            () -> Signature.getInstance(Transaction.SIGNING_ALGORITHM, PROVIDER)));
+    private static final ThreadLocal<KeyFactory> KEY_FACTORIES = ThreadLocal.withInitial(() -> create("key factory",
+            () -> KeyFactory.getInstance(Transaction.SIGNING_ALGORITHM, PROVIDER)));
+    private static final ThreadLocal<KeyPairGenerator> KEY_PAIR_GENERATORS = ThreadLocal.withInitial(() -> create(
+            "key pair generator", () -> KeyPairGenerator.getInstance(Transaction.SIGNING_ALGORITHM, PROVIDER)));
+
+    private CryptoEngines() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns the calling thread's SHA-256 digest. A digest left with pending
+     * input is reset first.
+     *
+     * @return the digest
+     */
+    static MessageDigest sha256() {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Returns the calling thread's Ed25519 signature engine. It must be
+     * initialised for signing or verification before each use.
+     *
+     * @return the signature engine
+     */
+    static Signature signature() {
+        return SIGNATURES.get();
+    }
+
+    /**
+     * Returns the calling thread's Ed25519 key factory.
+     *
+     * @return the key factory
+     */
+    static KeyFactory keyFactory() {
+        return KEY_FACTORIES.get();
+    }
+
+    /**
+     * Returns the calling thread's Ed25519 key pair generator.
+     *
+     * @return the key pair generator
+     */
+    static KeyPairGenerator keyPairGenerator() {
+        return KEY_PAIR_GENERATORS.get();
+    }
+
+    private static <T> T create(String description, EngineFactory<T> factory) {
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException e) {
+            throw new CryptoRuntimeException("No " + description + " is available", e);
+        }
+    }
+
+    /**
+     * Creates one engine through the JCA.
+     */
+    @FunctionalInterface
+    private interface EngineFactory<T> {
+
+        T create() throws GeneralSecurityException;
+    }
+}
@@ -1,10 +1,9 @@
 package com.youngops;
 
-import java.security.Security;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,21 +11,32 @@ public class DengiCoinChain {
 
     private static final Logger logger = LoggerFactory.getLogger(DengiCoinChain.class);
 
+    /**
+     * Maximum number of transactions packed into one block.
+     */
+    private static final int MAX_BLOCK_TRANSACTIONS = 1000;
+
+    /**
+     * Maximum encoded size of the transactions packed into one block.
+     */
+    private static final int MAX_BLOCK_BYTES = 1 << 20;
+
     /**
      * The main method to initialize and run the DengiCoinChain application.
      *
      * @param args Command line arguments (not used).
      */
     public static void main(String[] args) {
-        Security.addProvider(new BouncyCastleProvider());
         try {
             List<Wallet> wallets = initializeWallets();
             List<Transaction> transactions = createTransactions(wallets);
             signTransactions(transactions, wallets);
-            List<List<Transaction>> groupedTransactions = groupTransactions(transactions);
+            Mempool mempool = new Mempool();
+            submitTransactions(mempool, transactions);
             Blockchain blockchainInstance = Blockchain.getInstance();
-            addBlocksToBlockchain(blockchainInstance, groupedTransactions);
+            addBlocksToBlockchain(blockchainInstance, mempool);
             validateAndPrintBlockchain(blockchainInstance);
+            logger.info("Metrics:{}{}", System.lineSeparator(), ChainMetrics.getDefault().dump());
         } catch (Exception e) {
             logger.error("An error occurred in DengiCoinChain: {}", e.getMessage(), e);
         }
@@ -77,76 +87,75 @@ public class DengiCoinChain {
 
     /**
      * Signs the first four transactions in the provided list using the private
-     * keys from the corresponding wallets.
+     * keys from the corresponding wallets, as one batch.
      *
      * @param transactions the list of transactions to be signed
      * @param wallets the list of wallets providing the private keys for signing
      * the transactions
      */
     private static void signTransactions(List<Transaction> transactions, List<Wallet> wallets) {
+        List<TransactionSigner.Request> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(new TransactionSigner.Request(transactions.get(i), wallets.get(i).getPrivateKey()));
+        }
+        TransactionSigner.Result result = TransactionSigner.getDefault().signAll(requests);
+        result.getFailures().forEach((position, error) -> logger.warn("Failed to sign transaction {}: {}",
+                position, error.getMessage()));
 
-        transactions.get(0).signTransaction(wallets.get(0).getPrivateKey());
-        transactions.get(1).signTransaction(wallets.get(1).getPrivateKey());
-        transactions.get(2).signTransaction(wallets.get(2).getPrivateKey());
-        transactions.get(3).signTransaction(wallets.get(3).getPrivateKey());
-
-        logger.info("Signed transactions.");
+        logger.info("Signed {} transactions.", result.getSignedCount());
     }
 
     /**
-     * Groups each transaction into its own list and returns a list of these
-     * lists.
+     * Submits the transactions to the mempool, which checks their signatures
+     * and drops duplicates.
      *
-     * @param transactions the list of transactions to be grouped
-     * @return a list of lists, where each inner list contains a single
-     * transaction
+     * @param mempool the pool collecting transactions for the next blocks
+     * @param transactions the signed transactions to submit
      */
-    private static List<List<Transaction>> groupTransactions(List<Transaction> transactions) {
-        List<List<Transaction>> groupedTransactions = new ArrayList<>();
+    private static void submitTransactions(Mempool mempool, List<Transaction> transactions) {
         for (Transaction transaction : transactions) {
-            List<Transaction> transactionList = new ArrayList<>();
-            transactionList.add(transaction);
-            groupedTransactions.add(transactionList);
+            Mempool.Admission admission = mempool.submit(transaction);
+            if (admission != Mempool.Admission.ACCEPTED) {
+                logger.warn("Transaction from {} not admitted: {}", transaction.getSender(), admission);
+            }
         }
-
-        logger.info("Grouped transactions into lists.");
-        return groupedTransactions;
+        logger.info("Submitted transactions, {} pending.", mempool.size());
     }
 
     /**
-     * Adds a list of grouped transactions as blocks to the blockchain.
+     * Drains the mempool into blocks of up to {@link #MAX_BLOCK_TRANSACTIONS}
+     * transactions and {@link #MAX_BLOCK_BYTES} bytes, so a whole batch shares
+     * one proof-of-work.
      *
      * @param blockchainInstance the instance of the Blockchain to which the
      * blocks will be added
-     * @param groupedTransactions a list of lists, where each inner list
-     * contains transactions to be added as a block
+     * @param mempool the pool holding the pending transactions
      */
-    private static void addBlocksToBlockchain(Blockchain blockchainInstance,
-            List<List<Transaction>> groupedTransactions) {
-        int previousIndex
-                = blockchainInstance.getChain().get(blockchainInstance.getChain().size() - 1).getIndex();
-        for (List<Transaction> transactionList : groupedTransactions) {
-            Block block = new Block(previousIndex + 1, transactionList,
-                    blockchainInstance.getChain().get(blockchainInstance.getChain().size() - 1).getHash());
+    private static void addBlocksToBlockchain(Blockchain blockchainInstance, Mempool mempool) {
+        List<Transaction> batch;
+        while (!(batch = mempool.nextBatch(MAX_BLOCK_TRANSACTIONS, MAX_BLOCK_BYTES)).isEmpty()) {
+            Block tip = blockchainInstance.getChain().get(blockchainInstance.getChain().size() - 1);
+            Block block = new Block(tip.getIndex() + 1, batch, tip.getHash());
             blockchainInstance.addBlock(block);
-            logger.info("Added Block {}.", block.getIndex());
-            previousIndex = block.getIndex();
+            logger.info("Added Block {} with {} transactions.", block.getIndex(), batch.size());
         }
     }
 
     /**
-     * Validates the blockchain and prints its JSON representation.
+     * Validates the blockchain and streams its JSON representation to standard
+     * output, one block at a time.
      *
      * @param blockchainInstance the instance of the Blockchain to be validated
      * and printed
+     * @throws IOException if writing to standard output fails
      */
-    private static void validateAndPrintBlockchain(Blockchain blockchainInstance) {
+    private static void validateAndPrintBlockchain(Blockchain blockchainInstance) throws IOException {
         boolean isValid = Blockchain.isChainValid();
         logger.info("Blockchain is Valid: {}", isValid);
         System.out.println("\nBlockchain is Valid: " + isValid);
-        String blockchainJson = blockchainInstance.toJson();
         System.out.println("\nThe block chain: ");
-        System.out.println(blockchainJson);
+        blockchainInstance.writeJson(System.out, true);
+        System.out.println();
         logger.info("Printed blockchain JSON.");
     }
 
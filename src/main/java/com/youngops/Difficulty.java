@@ -0,0 +1,160 @@
+package com.youngops;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Proof-of-work targets in their compact 32-bit form. A block hash, read as an
+ * unsigned 256-bit big-endian number, satisfies a target if it is not greater
+ * than the target.
+ *
+ * <p>
+ * The compact form keeps the target as a 24-bit mantissa and a one-byte length
+ * in bytes: {@code target = mantissa * 256^(exponent - 3)}, with the sign bit
+ * of the mantissa always clear. Unlike a count of leading zero hex digits,
+ * which can only change the work by factors of 16, the mantissa lets the
+ * target move in steps of well under one percent.
+ * </p>
+ */
+public final class Difficulty {
+
+    /**
+     * Length in bytes of an expanded target and of a block hash.
+     */
+    public static final int TARGET_LENGTH = 32;
+
+    /**
+     * The largest target, the easiest a block can be.
+     */
+    public static final BigInteger MAX_TARGET = BigInteger.ONE.shiftLeft(8 * TARGET_LENGTH).subtract(BigInteger.ONE);
+
+    private static final int SIGN_BIT = 0x00800000;
+    private static final int MANTISSA_MASK = 0x007fffff;
+
+    /**
+     * Largest factor by which one retarget may change the target.
+     */
+    static final int MAX_ADJUSTMENT = 4;
+
+    /**
+     * Private constructor to prevent instantiation. Throws
+     * UnsupportedOperationException if called.
+     */
+    private Difficulty() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns the compact target that requires at least the given number of
+     * leading zero hex digits.
+     *
+     * @param hexDigits the number of leading zero hex digits, from 0 to 64
+     * @return the compact target
+     * @throws IllegalArgumentException if hexDigits is out of range
+     */
+    public static int fromLeadingZeros(int hexDigits) {
+        if (hexDigits < 0 || hexDigits > 2 * TARGET_LENGTH) {
+            throw new IllegalArgumentException("Leading zero digits must be between 0 and 64, got " + hexDigits);
+        }
+        return toBits(BigInteger.ONE.shiftLeft(4 * (2 * TARGET_LENGTH - hexDigits)).subtract(BigInteger.ONE));
+    }
+
+    /**
+     * Expands a compact target.
+     *
+     * @param bits the compact target
+     * @return the target
+     * @throws IllegalArgumentException if the sign bit of the mantissa is set
+     */
+    public static BigInteger toTarget(int bits) {
+        if ((bits & SIGN_BIT) != 0) {
+            throw new IllegalArgumentException("Negative compact target: " + Integer.toHexString(bits));
+        }
+        int exponent = bits >>> 24;
+        BigInteger mantissa = BigInteger.valueOf(bits & MANTISSA_MASK);
+        return exponent <= 3 ? mantissa.shiftRight(8 * (3 - exponent)) : mantissa.shiftLeft(8 * (exponent - 3));
+    }
+
+    /**
+     * Compresses a target into its compact form, rounding it down.
+     *
+     * @param target the target, not negative
+     * @return the compact target
+     * @throws IllegalArgumentException if the target is negative
+     */
+    public static int toBits(BigInteger target) {
+        if (target.signum() < 0) {
+            throw new IllegalArgumentException("Target must not be negative: " + target);
+        }
+        int size = (target.bitLength() + 7) / 8;
+        int mantissa = size <= 3
+                ? target.intValue() << (8 * (3 - size))
+                : target.shiftRight(8 * (size - 3)).intValue();
+        if ((mantissa & SIGN_BIT) != 0) {
+            mantissa >>>= 8;
+            size++;
+        }
+        return (size << 24) | mantissa;
+    }
+
+    /**
+     * Expands a compact target into 32 big-endian bytes, capped at
+     * {@link #MAX_TARGET}.
+     *
+     * @param bits the compact target
+     * @return the expanded target
+     */
+    public static byte[] toTargetBytes(int bits) {
+        BigInteger target = toTarget(bits).min(MAX_TARGET);
+        byte[] raw = target.toByteArray();
+        byte[] bytes = new byte[TARGET_LENGTH];
+        int length = Math.min(raw.length, TARGET_LENGTH);
+        System.arraycopy(raw, raw.length - length, bytes, TARGET_LENGTH - length, length);
+        return bytes;
+    }
+
+    /**
+     * Checks whether a hash satisfies a compact target.
+     *
+     * @param hash the 32-byte hash
+     * @param bits the compact target
+     * @return true if the hash is not greater than the target
+     */
+    public static boolean meetsTarget(byte[] hash, int bits) {
+        return Arrays.compareUnsigned(hash, toTargetBytes(bits)) <= 0;
+    }
+
+    /**
+     * Scales a target by the ratio of the observed time to the intended time,
+     * so blocks that came too fast make the next ones harder and blocks that
+     * came too slowly make them easier. The ratio is clamped to
+     * [1/{@value #MAX_ADJUSTMENT}, {@value #MAX_ADJUSTMENT}] so a few bad
+     * timestamps cannot swing the difficulty, and the result never exceeds the
+     * limit.
+     *
+     * @param bits the current compact target
+     * @param actualMillis the time the last blocks took
+     * @param expectedMillis the time they should have taken, positive
+     * @param limitBits the easiest target allowed
+     * @return the adjusted compact target
+     */
+    public static int retarget(int bits, long actualMillis, long expectedMillis, int limitBits) {
+        long clamped = Math.max(expectedMillis / MAX_ADJUSTMENT, Math.min(actualMillis, expectedMillis * MAX_ADJUSTMENT));
+        BigInteger target = toTarget(bits)
+                .multiply(BigInteger.valueOf(Math.max(clamped, 1)))
+                .divide(BigInteger.valueOf(expectedMillis));
+        return toBits(target.min(toTarget(limitBits)));
+    }
+
+    /**
+     * Returns the expected number of hashes needed to find a block meeting a
+     * target, {@code 2^256 / (target + 1)}. Summed over a chain it gives the
+     * chain's cumulative work, which decides between competing branches.
+     *
+     * @param bits the compact target
+     * @return the work represented by a block with that target
+     */
+    public static BigInteger work(int bits) {
+        return BigInteger.ONE.shiftLeft(8 * TARGET_LENGTH).divide(toTarget(bits).add(BigInteger.ONE));
+    }
+}
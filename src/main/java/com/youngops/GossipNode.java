@@ -0,0 +1,639 @@
+package com.youngops;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.youngops.exception.NetworkRuntimeException;
+
+/**
+ * A network node with its own chain, mempool and miner that gossips
+ * transactions and blocks with its peers over loopback TCP.
+ *
+ * <p>
+ * All networking runs on one thread per node, driven by a {@link Selector}
+ * over non-blocking {@link SocketChannel}s. The same thread handles every
+ * received message, so the node's view of its peers, the set of messages it
+ * has seen and its orphan blocks need no locking. Other threads hand work to
+ * it through a task queue and wake the selector.
+ * </p>
+ *
+ * <p>
+ * Each message on the wire is framed as:
+ * </p>
+ * <pre>
+ * int    length of the type and the payload
+ * byte   message type, 1 for a transaction and 2 for a block
+ * byte[] payload in the {@link BlockCodec} format
+ * </pre>
+ * <p>
+ * A node relays a message it has not seen before to every peer except the one
+ * it came from, once the mempool admitted the transaction or the chain kept
+ * the block. Blocks whose parent is unknown are held until the parent
+ * arrives. A peer that sends a malformed frame is disconnected.
+ * </p>
+ */
+public final class GossipNode implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GossipNode.class);
+
+    static final byte TRANSACTION = 1;
+    static final byte BLOCK = 2;
+
+    /**
+     * Largest frame a peer may send.
+     */
+    static final int MAX_FRAME_LENGTH = 32 << 20;
+
+    private static final int HEADER_LENGTH = Integer.BYTES + 1;
+    private static final int READ_BUFFER_SIZE = 64 << 10;
+    private static final int SEEN_CAPACITY = 100_000;
+    private static final int MAX_ORPHANS = 256;
+
+    private final String name;
+    private final Blockchain blockchain;
+    private final Mempool mempool;
+    private final BlockMiner miner;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread eventLoop;
+    private final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<>();
+    private final List<Peer> peers = new ArrayList<>();
+    private final Set<String> seen = Collections.newSetFromMap(new BoundedMap<>(SEEN_CAPACITY));
+    /**
+     * Blocks whose parent is not known yet, keyed by their own hash so
+     * siblings do not displace each other.
+     */
+    private final Map<String, Block> orphans = new BoundedMap<>(MAX_ORPHANS);
+    private final AtomicLong blocksReceived = new AtomicLong();
+    private final AtomicLong orphansReceived = new AtomicLong();
+    private final AtomicLong transactionsReceived = new AtomicLong();
+    private volatile BiConsumer<Block, Blockchain.Acceptance> blockListener = (block, acceptance) -> {
+    };
+    private volatile boolean running = true;
+
+    /**
+     * Starts a node listening on an ephemeral loopback port, with a fresh
+     * in-memory chain and a single-threaded miner. The chain rejects blocks
+     * that overspend and the mempool turns away transactions their sender
+     * cannot afford at the tip.
+     *
+     * @param name the name of the node, used in logs and thread names
+     * @param params the consensus parameters of the node's chain
+     * @throws NetworkRuntimeException if the node cannot listen
+     */
+    public GossipNode(String name, ChainParams params) {
+        this.name = name;
+        this.blockchain = Blockchain.create(params);
+        blockchain.setRequireFunds(true);
+        this.mempool = new Mempool(Mempool.DEFAULT_CAPACITY, blockchain::isAdmissible);
+        this.miner = new BlockMiner(1);
+        blockchain.setMiner(miner);
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            miner.shutdown();
+            throw new NetworkRuntimeException("Failed to start node " + name, e);
+        }
+        this.eventLoop = new Thread(this::run, "gossip-" + name);
+        eventLoop.setDaemon(true);
+        eventLoop.start();
+        logger.debug("Node {} listening on {}.", name, getAddress());
+    }
+
+    /**
+     * Returns the name of the node.
+     *
+     * @return the name of the node
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the loopback address the node accepts peers on.
+     *
+     * @return the listening address
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) server.getLocalAddress();
+        } catch (IOException e) {
+            throw new NetworkRuntimeException("Node " + name + " is not listening", e);
+        }
+    }
+
+    /**
+     * Returns the node's chain.
+     *
+     * @return the chain
+     */
+    public Blockchain getBlockchain() {
+        return blockchain;
+    }
+
+    /**
+     * Returns the node's pool of pending transactions.
+     *
+     * @return the mempool
+     */
+    public Mempool getMempool() {
+        return mempool;
+    }
+
+    /**
+     * Sets a callback run on the node's event loop for every block the node
+     * offers to its chain, whether mined locally or received, with the
+     * outcome. The callback must not block.
+     *
+     * @param blockListener the callback
+     */
+    public void setBlockListener(BiConsumer<Block, Blockchain.Acceptance> blockListener) {
+        this.blockListener = blockListener;
+    }
+
+    /**
+     * Opens a connection to another node and starts gossiping with it.
+     *
+     * @param address the listening address of the other node
+     * @throws NetworkRuntimeException if the connection fails
+     */
+    public void connect(InetSocketAddress address) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            throw new NetworkRuntimeException("Node " + name + " failed to connect to " + address, e);
+        }
+        submit(() -> {
+            register(channel);
+            return null;
+        }).join();
+    }
+
+    /**
+     * Returns the number of connected peers.
+     *
+     * @return the number of peers
+     */
+    public int getPeerCount() {
+        return submit(peers::size).join();
+    }
+
+    /**
+     * Submits a transaction to the node, which gossips it to its peers if
+     * the mempool admits it.
+     *
+     * @param transaction the signed transaction
+     * @return the outcome of the submission to the node's mempool
+     */
+    public Mempool.Admission submitTransaction(Transaction transaction) {
+        return submit(() -> handleTransaction(transaction, null)).join();
+    }
+
+    /**
+     * Mines a block paying the block reward to the node itself.
+     *
+     * @param maxTransactions the maximum number of transactions in the block
+     * @param maxBytes the maximum encoded size of those transactions
+     * @return the mined block
+     * @see #mineBlock(int, int, String)
+     */
+    public Block mineBlock(int maxTransactions, int maxBytes) {
+        return mineBlock(maxTransactions, maxBytes, name);
+    }
+
+    /**
+     * Mines a block on top of the node's tip from the oldest pending
+     * transactions, offers it to the node's chain and gossips it. Mining runs
+     * on the calling thread, so the node keeps receiving meanwhile; if the tip
+     * moves before the block is mined, it ends up on a side branch.
+     *
+     * <p>
+     * The block starts with a coinbase paying {@link ChainParams#BLOCK_REWARD}
+     * to the reward account. Pending transactions their sender can no longer
+     * afford at the tip, given the spends picked before them, are dropped so
+     * the block is not rejected for overspending.
+     * </p>
+     *
+     * @param maxTransactions the maximum number of pending transactions in the
+     * block
+     * @param maxBytes the maximum encoded size of those transactions
+     * @param rewardAccount the account the coinbase pays
+     * @return the mined block
+     */
+    public Block mineBlock(int maxTransactions, int maxBytes, String rewardAccount) {
+        List<Transaction> batch = mempool.nextBatch(maxTransactions, maxBytes);
+        List<Block> chain = blockchain.getChain();
+        Block tip = chain.get(chain.size() - 1);
+        List<Transaction> transactions = new ArrayList<>(batch.size() + 1);
+        transactions.add(Transaction.coinbase(tip.getIndex() + 1, rewardAccount, ChainParams.BLOCK_REWARD));
+        Map<String, Long> debits = new HashMap<>();
+        for (Transaction tx : batch) {
+            long pendingDebit = debits.getOrDefault(tx.getSender(), 0L);
+            if (blockchain.isAdmissible(tx, pendingDebit)) {
+                transactions.add(tx);
+                debits.put(tx.getSender(), pendingDebit + tx.getAmount());
+            } else {
+                logger.debug("Node {} dropped unaffordable transaction {}.", name, tx.getId());
+            }
+        }
+        Block block = new Block(tip.getIndex() + 1, transactions, tip.getHash());
+        block.mineBlockToTarget(blockchain.getParams().bitsAt(chain, chain.size()), miner);
+        submit(() -> handleBlock(block, null)).join();
+        return block;
+    }
+
+    /**
+     * Returns the number of blocks received from peers.
+     *
+     * @return the number of received blocks
+     */
+    public long getBlocksReceived() {
+        return blocksReceived.get();
+    }
+
+    /**
+     * Returns the number of received blocks whose parent was not known when
+     * they arrived.
+     *
+     * @return the number of orphan blocks
+     */
+    public long getOrphansReceived() {
+        return orphansReceived.get();
+    }
+
+    /**
+     * Returns the number of transactions received from peers.
+     *
+     * @return the number of received transactions
+     */
+    public long getTransactionsReceived() {
+        return transactionsReceived.get();
+    }
+
+    /**
+     * Stops the event loop, closes every connection and shuts the miner down.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            eventLoop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        miner.shutdown();
+        blockchain.close();
+    }
+
+    /**
+     * Runs a task on the event loop. The returned future fails if the node is
+     * closed or its event loop has stopped before the task ran.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> action) {
+        Task<T> task = new Task<>(action);
+        tasks.add(task);
+        if (!running) {
+            task.future.completeExceptionally(new NetworkRuntimeException("Node " + name + " is closed"));
+        }
+        selector.wakeup();
+        return task.future;
+    }
+
+    /**
+     * The event loop: waits for ready channels, serves them, then runs the
+     * tasks handed over by other threads. However it ends, it stops the node
+     * and fails the tasks it did not run, so no caller waits forever.
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select(this::onReady);
+                Task<?> task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Event loop of node {} failed: {}", name, e.toString());
+        } finally {
+            running = false;
+            for (Peer peer : new ArrayList<>(peers)) {
+                peer.close();
+            }
+            closeQuietly(server);
+            closeQuietly(selector);
+            NetworkRuntimeException stopped = new NetworkRuntimeException("Node " + name + " is closed");
+            Task<?> task;
+            while ((task = tasks.poll()) != null) {
+                task.future.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private void onReady(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Peer peer = (Peer) key.attachment();
+        try {
+            if (key.isReadable()) {
+                peer.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                peer.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Whatever a peer sends, only its own connection is at stake.
+            logger.debug("Node {} dropped peer {}: {}", name, peer.remote, e.toString());
+            peer.close();
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = server.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                register(channel);
+            }
+        } catch (IOException e) {
+            logger.warn("Node {} failed to accept a peer: {}", name, e.toString());
+        }
+    }
+
+    private void register(SocketChannel channel) {
+        try {
+            Peer peer = new Peer(channel);
+            peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+            peers.add(peer);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new NetworkRuntimeException("Node " + name + " failed to register a peer", e);
+        }
+    }
+
+    /**
+     * Handles a complete frame received from a peer.
+     */
+    private void onFrame(Peer source, byte type, byte[] payload) {
+        if (type == TRANSACTION) {
+            transactionsReceived.incrementAndGet();
+            handleTransaction(BlockCodec.decodeTransaction(payload), source);
+        } else if (type == BLOCK) {
+            blocksReceived.incrementAndGet();
+            handleBlock(BlockCodec.decode(payload), source);
+        } else {
+            throw new IllegalArgumentException("Unknown message type " + type);
+        }
+    }
+
+    private Mempool.Admission handleTransaction(Transaction transaction, Peer source) {
+        if (!seen.add(transaction.getId())) {
+            return Mempool.Admission.DUPLICATE;
+        }
+        Mempool.Admission admission = mempool.submit(transaction);
+        if (admission == Mempool.Admission.ACCEPTED) {
+            relay(TRANSACTION, BlockCodec.encode(transaction), source);
+        }
+        return admission;
+    }
+
+    /**
+     * Offers a block to the chain and relays it, then does the same for any
+     * orphans waiting for it.
+     */
+    private Blockchain.Acceptance handleBlock(Block block, Peer source) {
+        if (!seen.add(block.getHash())) {
+            return Blockchain.Acceptance.DUPLICATE;
+        }
+        Blockchain.Acceptance acceptance = blockchain.acceptBlock(block);
+        blockListener.accept(block, acceptance);
+        switch (acceptance) {
+            case ORPHAN:
+                orphansReceived.incrementAndGet();
+                orphans.put(block.getHash(), block);
+                break;
+            case EXTENDED:
+            case REORGANIZED:
+            case SIDE_BRANCH:
+                if (acceptance != Blockchain.Acceptance.SIDE_BRANCH) {
+                    for (Transaction tx : block.getTransactions()) {
+                        seen.add(tx.getId());
+                        mempool.remove(tx.getId());
+                    }
+                }
+                relay(BLOCK, BlockCodec.encode(block), source);
+                for (Block child : takeOrphansOf(block.getHash())) {
+                    seen.remove(child.getHash());
+                    handleBlock(child, null);
+                }
+                break;
+            default:
+                break;
+        }
+        return acceptance;
+    }
+
+    /**
+     * Removes and returns the orphans whose parent is the given block.
+     */
+    private List<Block> takeOrphansOf(String parentHash) {
+        List<Block> children = new ArrayList<>();
+        for (Iterator<Block> it = orphans.values().iterator(); it.hasNext();) {
+            Block orphan = it.next();
+            if (orphan.getPreviousHash().equals(parentHash)) {
+                children.add(orphan);
+                it.remove();
+            }
+        }
+        return children;
+    }
+
+    private void relay(byte type, byte[] payload, Peer source) {
+        byte[] frame = new byte[HEADER_LENGTH + payload.length];
+        ByteBuffer.wrap(frame).putInt(payload.length + 1).put(type).put(payload);
+        for (Peer peer : new ArrayList<>(peers)) {
+            if (peer != source) {
+                peer.send(ByteBuffer.wrap(frame));
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.debug("Failed to close {}: {}", closeable, e.toString());
+        }
+    }
+
+    /**
+     * A connection to another node with its partly read input and its queue
+     * of frames waiting to be written. Only used on the event loop.
+     */
+    private final class Peer {
+
+        private final SocketChannel channel;
+        private final SocketAddress remote;
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private ByteBuffer inbound = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private SelectionKey key;
+
+        Peer(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.remote = channel.getRemoteAddress();
+        }
+
+        /**
+         * Reads what the channel has and handles every complete frame.
+         */
+        void read() throws IOException {
+            if (channel.read(inbound) < 0) {
+                close();
+                return;
+            }
+            inbound.flip();
+            while (inbound.remaining() >= Integer.BYTES) {
+                int length = inbound.getInt(inbound.position());
+                if (length < 1 || length > MAX_FRAME_LENGTH) {
+                    throw new IllegalArgumentException("Bad frame length " + length);
+                }
+                if (inbound.remaining() < Integer.BYTES + length) {
+                    if (inbound.capacity() < Integer.BYTES + length) {
+                        inbound = ByteBuffer.allocate(Integer.BYTES + length).put(inbound);
+                        inbound.flip();
+                    }
+                    break;
+                }
+                inbound.getInt();
+                byte type = inbound.get();
+                byte[] payload = new byte[length - 1];
+                inbound.get(payload);
+                onFrame(this, type, payload);
+                if (!key.isValid()) {
+                    return;
+                }
+            }
+            inbound.compact();
+        }
+
+        /**
+         * Queues a frame and writes as much as the channel takes.
+         */
+        void send(ByteBuffer frame) {
+            outbound.add(frame);
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.debug("Node {} dropped peer {}: {}", name, remote, e.toString());
+                close();
+            }
+        }
+
+        /**
+         * Writes queued frames until the channel is full, and asks to be told
+         * when it can take more.
+         */
+        void flush() throws IOException {
+            while (!outbound.isEmpty()) {
+                ByteBuffer frame = outbound.peek();
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    break;
+                }
+                outbound.poll();
+            }
+            if (key.isValid()) {
+                key.interestOps(outbound.isEmpty() ? SelectionKey.OP_READ
+                        : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close() {
+            peers.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * An action handed to the event loop with the future of its result.
+     */
+    private static final class Task<T> {
+
+        private final Supplier<T> action;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(Supplier<T> action) {
+            this.action = action;
+        }
+
+        void run() {
+            try {
+                future.complete(action.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A map that forgets its oldest entry once it holds too many.
+     */
+    private static final class BoundedMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        BoundedMap(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.youngops;
+
+/**
+ * Hashes block headers with SHA-256 while only varying the nonce. The header
+ * layout puts the nonce in the last eight bytes, so the first 64-byte chunk of
+ * the header never changes while mining. Its compressed state (the midstate) is
+ * computed once, and every nonce afterwards costs a single compression of the
+ * final chunk without any allocation.
+ *
+ * <p>
+ * Instances are not thread-safe; each mining worker uses its own.
+ * </p>
+ */
+final class HeaderHasher {
+
+    private static final int[] INITIAL_STATE = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+        0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private static final int CHUNK_LENGTH = 64;
+    private static final int NONCE_WORD = 4;
+
+    private final int[] midstate = new int[8];
+    private final int[] tail = new int[16];
+    private final int[] schedule = new int[64];
+    private final int[] state = new int[8];
+
+    /**
+     * Prepares the midstate and the final chunk for a header prefix, which is
+     * the full header without its trailing eight-byte nonce.
+     *
+     * @param prefix the header bytes preceding the nonce
+     * @throws IllegalArgumentException if the prefix is not
+     * {@link Block#HEADER_PREFIX_LENGTH} bytes long
+     */
+    HeaderHasher(byte[] prefix) {
+        if (prefix.length != Block.HEADER_PREFIX_LENGTH) {
+            throw new IllegalArgumentException("Header prefix must be " + Block.HEADER_PREFIX_LENGTH
+                    + " bytes, got " + prefix.length);
+        }
+        System.arraycopy(INITIAL_STATE, 0, midstate, 0, 8);
+        for (int i = 0; i < 16; i++) {
+            tail[i] = readInt(prefix, i * 4);
+        }
+        compress(midstate, tail);
+
+        int remaining = (prefix.length - CHUNK_LENGTH) / 4;
+        for (int i = 0; i < remaining; i++) {
+            tail[i] = readInt(prefix, CHUNK_LENGTH + i * 4);
+        }
+        for (int i = remaining; i < 16; i++) {
+            tail[i] = 0;
+        }
+        // Nonce occupies words 4 and 5, followed by the SHA-256 padding.
+        tail[NONCE_WORD + 2] = 0x80000000;
+        tail[15] = (prefix.length + Long.BYTES) * 8;
+    }
+
+    /**
+     * Expands a compact target into the eight big-endian words the hash state
+     * is compared with.
+     *
+     * @param bits the compact target
+     * @return the target as eight words
+     */
+    static int[] targetWords(int bits) {
+        byte[] target = Difficulty.toTargetBytes(bits);
+        int[] words = new int[8];
+        for (int i = 0; i < 8; i++) {
+            words[i] = readInt(target, i * 4);
+        }
+        return words;
+    }
+
+    /**
+     * Hashes the header with the given nonce and checks whether the result,
+     * read as an unsigned 256-bit number, does not exceed the target. The
+     * comparison works on the hash state words, so nothing is allocated.
+     *
+     * @param nonce the nonce to try
+     * @param target the target as returned by {@link #targetWords(int)}
+     * @return true if the hash satisfies the target
+     */
+    boolean meetsTarget(long nonce, int[] target) {
+        hash(nonce);
+        for (int i = 0; i < 8; i++) {
+            if (state[i] != target[i]) {
+                return Integer.compareUnsigned(state[i], target[i]) < 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the header with the given nonce and returns the digest.
+     *
+     * @param nonce the nonce to hash with
+     * @return the 32-byte SHA-256 digest of the header
+     */
+    byte[] digest(long nonce) {
+        hash(nonce);
+        byte[] out = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            int word = state[i];
+            out[i * 4] = (byte) (word >>> 24);
+            out[i * 4 + 1] = (byte) (word >>> 16);
+            out[i * 4 + 2] = (byte) (word >>> 8);
+            out[i * 4 + 3] = (byte) word;
+        }
+        return out;
+    }
+
+    private void hash(long nonce) {
+        tail[NONCE_WORD] = (int) (nonce >>> 32);
+        tail[NONCE_WORD + 1] = (int) nonce;
+        System.arraycopy(midstate, 0, state, 0, 8);
+        compress(state, tail);
+    }
+
+    private void compress(int[] h, int[] block) {
+        int[] w = schedule;
+        System.arraycopy(block, 0, w, 0, 16);
+        for (int t = 16; t < 64; t++) {
+            int s0 = Integer.rotateRight(w[t - 15], 7) ^ Integer.rotateRight(w[t - 15], 18) ^ (w[t - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[t - 2], 17) ^ Integer.rotateRight(w[t - 2], 19) ^ (w[t - 2] >>> 10);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+
+        int a = h[0];
+        int b = h[1];
+        int c = h[2];
+        int d = h[3];
+        int e = h[4];
+        int f = h[5];
+        int g = h[6];
+        int hh = h[7];
+        for (int t = 0; t < 64; t++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int temp1 = hh + s1 + ch + K[t] + w[t];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int temp2 = s0 + maj;
+            hh = g;
+            g = f;
+            f = e;
+            e = d + temp1;
+            d = c;
+            c = b;
+            b = a;
+            a = temp1 + temp2;
+        }
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+        h[4] += e;
+        h[5] += f;
+        h[6] += g;
+        h[7] += hh;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+}
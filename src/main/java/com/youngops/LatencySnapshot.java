@@ -0,0 +1,112 @@
+package com.youngops;
+
+import java.util.Locale;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A summary of recorded durations, in microseconds. Exposed over JMX as a
+ * composite value by {@link ChainMetricsMXBean}.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+
+    /**
+     * Constructs a snapshot.
+     *
+     * @param count the number of recorded durations
+     * @param meanMicros the mean duration
+     * @param p50Micros the median duration
+     * @param p90Micros the 90th percentile
+     * @param p99Micros the 99th percentile
+     * @param maxMicros the longest duration
+     */
+    public LatencySnapshot(long count, double meanMicros, double p50Micros, double p90Micros, double p99Micros,
+            double maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Rebuilds a snapshot from its JMX representation, which lets MXBean
+     * proxies return snapshots.
+     *
+     * @param data the composite value
+     * @return the snapshot
+     */
+    public static LatencySnapshot from(CompositeData data) {
+        return new LatencySnapshot((Long) data.get("count"), (Double) data.get("meanMicros"),
+                (Double) data.get("p50Micros"), (Double) data.get("p90Micros"), (Double) data.get("p99Micros"),
+                (Double) data.get("maxMicros"));
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean duration.
+     *
+     * @return the mean in microseconds
+     */
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * Returns the median duration.
+     *
+     * @return the median in microseconds
+     */
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * Returns the 90th percentile duration.
+     *
+     * @return the 90th percentile in microseconds
+     */
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    /**
+     * Returns the 99th percentile duration.
+     *
+     * @return the 99th percentile in microseconds
+     */
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    /**
+     * Returns the longest duration.
+     *
+     * @return the maximum in microseconds
+     */
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                count, meanMicros, p50Micros, p90Micros, p99Micros, maxMicros);
+    }
+}
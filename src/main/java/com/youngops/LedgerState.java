@@ -0,0 +1,225 @@
+package com.youngops;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.youngops.exception.InsufficientFundsRuntimeException;
+
+/**
+ * The balance of every account, maintained incrementally as blocks are added
+ * to the chain and rolled back when they are removed. Each transaction debits
+ * its sender and credits its recipient, except a coinbase, which only credits
+ * its recipient and is the one way funds enter the ledger.
+ *
+ * <p>
+ * Balances live in an open-addressing table of account names and primitive
+ * {@code long} balances, so {@link #balanceOf(String)} and the admission
+ * checks cost the same whatever the length of the chain.
+ * </p>
+ *
+ * <p>
+ * Not thread-safe; the blockchain serializes updates.
+ * </p>
+ */
+public final class LedgerState {
+
+    private String[] accounts = new String[64];
+    private long[] balances = new long[64];
+    private int size;
+
+    /**
+     * Returns the balance of an account.
+     *
+     * @param account the account identifier
+     * @return the balance, zero for an account that never transacted
+     */
+    public long balanceOf(String account) {
+        int slot = find(account);
+        return accounts[slot] == null ? 0 : balances[slot];
+    }
+
+    /**
+     * Returns the number of accounts that have ever transacted.
+     *
+     * @return the number of accounts
+     */
+    public int getAccountCount() {
+        return size;
+    }
+
+    /**
+     * Checks whether a transaction can be admitted on top of the current
+     * balances: its amount must not be negative and its sender must hold at
+     * least the amount. A coinbase is never admissible on its own; it only
+     * enters the chain as part of a block.
+     *
+     * @param transaction the transaction to check
+     * @return true if the sender can afford the transaction
+     */
+    public boolean isAdmissible(Transaction transaction) {
+        return isAdmissible(transaction, 0);
+    }
+
+    /**
+     * Checks whether a transaction can be admitted when the sender already has
+     * other spends pending.
+     *
+     * @param transaction the transaction to check
+     * @param pendingDebit the amount the sender has already committed to spend
+     * @return true if the sender can afford the transaction as well
+     */
+    public boolean isAdmissible(Transaction transaction, long pendingDebit) {
+        int amount = transaction.getAmount();
+        return !transaction.isCoinbase() && amount >= 0 && balanceOf(transaction.getSender()) - pendingDebit >= amount;
+    }
+
+    /**
+     * Checks that every transaction of a block is affordable, taking earlier
+     * transactions of the same block into account. A coinbase is not checked
+     * against any balance; it credits its recipient for the transactions after
+     * it.
+     *
+     * @param block the block to check
+     * @throws InsufficientFundsRuntimeException if a transaction overspends
+     */
+    public void checkBlock(Block block) {
+        Map<String, Long> debits = new HashMap<>();
+        Map<String, Long> credits = new HashMap<>();
+        for (Transaction tx : block.getTransactions()) {
+            if (tx.isCoinbase()) {
+                credits.merge(tx.getRecipient(), (long) tx.getAmount(), Long::sum);
+                continue;
+            }
+            String sender = tx.getSender();
+            long available = balanceOf(sender) + credits.getOrDefault(sender, 0L) - debits.getOrDefault(sender, 0L);
+            if (tx.getAmount() < 0 || available < tx.getAmount()) {
+                throw new InsufficientFundsRuntimeException(String.format(
+                        "Account %s cannot send %d in block %d, available balance is %d",
+                        sender, tx.getAmount(), block.getIndex(), available));
+            }
+            debits.merge(sender, (long) tx.getAmount(), Long::sum);
+            credits.merge(tx.getRecipient(), (long) tx.getAmount(), Long::sum);
+        }
+    }
+
+    /**
+     * Applies the transactions of a block to the balances.
+     *
+     * @param block the block added to the chain
+     */
+    public void apply(Block block) {
+        for (Transaction tx : block.getTransactions()) {
+            if (!tx.isCoinbase()) {
+                adjust(tx.getSender(), -tx.getAmount());
+            }
+            adjust(tx.getRecipient(), tx.getAmount());
+        }
+    }
+
+    /**
+     * Reverts the transactions of a block, for example when the block is
+     * removed from the tip of the chain.
+     *
+     * @param block the block removed from the chain
+     */
+    public void undo(Block block) {
+        List<Transaction> transactions = block.getTransactions();
+        for (int i = transactions.size() - 1; i >= 0; i--) {
+            Transaction tx = transactions.get(i);
+            adjust(tx.getRecipient(), -tx.getAmount());
+            if (!tx.isCoinbase()) {
+                adjust(tx.getSender(), tx.getAmount());
+            }
+        }
+    }
+
+    /**
+     * Removes every balance.
+     */
+    public void clear() {
+        Arrays.fill(accounts, null);
+        Arrays.fill(balances, 0);
+        size = 0;
+    }
+
+    /**
+     * Writes every balance.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int slot = 0; slot < accounts.length; slot++) {
+            if (accounts[slot] != null) {
+                out.writeUTF(accounts[slot]);
+                out.writeLong(balances[slot]);
+            }
+        }
+    }
+
+    /**
+     * Replaces every balance with balances written by
+     * {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails or the balances are malformed
+     */
+    void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Malformed account count " + count);
+        }
+        clear();
+        for (int i = 0; i < count; i++) {
+            String account = in.readUTF();
+            adjust(account, in.readLong());
+        }
+    }
+
+    private void adjust(String account, long delta) {
+        int slot = find(account);
+        if (accounts[slot] == null) {
+            if ((size + 1) * 2 > accounts.length) {
+                resize();
+                slot = find(account);
+            }
+            accounts[slot] = account;
+            size++;
+        }
+        balances[slot] += delta;
+    }
+
+    /**
+     * Returns the slot holding the account, or the empty slot where it would
+     * be inserted.
+     */
+    private int find(String account) {
+        int mask = accounts.length - 1;
+        long hash = ChainIndex.accountKey(account);
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (accounts[slot] != null && !accounts[slot].equals(account)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        String[] oldAccounts = accounts;
+        long[] oldBalances = balances;
+        accounts = new String[oldAccounts.length * 2];
+        balances = new long[oldBalances.length * 2];
+        for (int i = 0; i < oldAccounts.length; i++) {
+            if (oldAccounts[i] != null) {
+                int slot = find(oldAccounts[i]);
+                accounts[slot] = oldAccounts[i];
+                balances[slot] = oldBalances[i];
+            }
+        }
+    }
+}
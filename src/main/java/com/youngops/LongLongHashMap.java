@@ -0,0 +1,277 @@
+package com.youngops;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * An open-addressing hash map from primitive {@code long} keys to
+ * non-negative {@code long} values, using linear probing over two flat arrays.
+ * A key may be added more than once, which lets callers key the map by a
+ * truncated hash and resolve the rare collisions themselves.
+ *
+ * <p>
+ * The table is kept at most half full, so each entry costs at least 32 bytes,
+ * two 16-byte slots, and up to 64 bytes right after the table doubles. No
+ * entry allocates a wrapper object. Not thread-safe.
+ * </p>
+ */
+final class LongLongHashMap {
+
+    private static final long EMPTY = -1L;
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructs an empty map sized for the expected number of entries.
+     *
+     * @param expectedSize the number of entries expected
+     */
+    LongLongHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds an entry, even if the key is already present.
+     *
+     * @param key the key
+     * @param value the value, which must not be negative
+     */
+    void add(long key, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int slot = slotOf(key);
+        while (values[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Replaces the value of the first entry with the given key, or adds an
+     * entry if there is none.
+     *
+     * @param key the key
+     * @param value the value, which must not be negative
+     */
+    void put(long key, long value) {
+        for (int slot = slotOf(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+        add(key, value);
+    }
+
+    /**
+     * Returns the value of the first entry with the given key.
+     *
+     * @param key the key
+     * @return the value, or -1 if the key is absent
+     */
+    long get(long key) {
+        for (int slot = slotOf(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Passes the values of all entries with the given key to a visitor until it
+     * returns false.
+     *
+     * @param key the key
+     * @param visitor receives each value; returns false to stop
+     */
+    void forEach(long key, LongPredicate visitor) {
+        for (int slot = slotOf(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && !visitor.test(values[slot])) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes one entry with the given key and value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return true if an entry was removed
+     */
+    boolean remove(long key, long value) {
+        for (int slot = slotOf(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && values[slot] == value) {
+                deleteSlot(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the first entry with the given key.
+     *
+     * @param key the key
+     * @return true if an entry was removed
+     */
+    boolean remove(long key) {
+        for (int slot = slotOf(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                deleteSlot(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries, keeping the current capacity.
+     */
+    void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Writes the table as it is laid out, so that reading it back needs no
+     * rehashing.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(keys.length);
+        out.writeInt(size);
+        for (int slot = 0; slot < keys.length; slot++) {
+            out.writeLong(keys[slot]);
+            out.writeLong(values[slot]);
+        }
+    }
+
+    /**
+     * Replaces the entries with a table written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @throws IOException if reading fails or the table is malformed
+     */
+    void readFrom(DataInput in) throws IOException {
+        int capacity = in.readInt();
+        int count = in.readInt();
+        if (capacity < MINIMUM_CAPACITY || Integer.bitCount(capacity) != 1 || count < 0 || count * 2 > capacity) {
+            throw new IOException("Malformed table of capacity " + capacity + " holding " + count + " entries");
+        }
+        allocate(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            keys[slot] = in.readLong();
+            values[slot] = in.readLong();
+        }
+        size = count;
+    }
+
+    /**
+     * Passes every entry to a visitor, in table order.
+     *
+     * @param visitor receives each key and value
+     */
+    void forEachEntry(EntryVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != EMPTY) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Receives the entries of the map.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+
+        /**
+         * Receives one entry.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void visit(long key, long value);
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the same probe run back so
+     * lookups never stop early at the hole.
+     */
+    private void deleteSlot(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == EMPTY) {
+                break;
+            }
+            int home = slotOf(keys[slot]);
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = EMPTY;
+        size--;
+    }
+
+    private int slotOf(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,460 @@
+package com.youngops;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.youngops.exception.BlockStoreRuntimeException;
+
+/**
+ * A disk-backed, append-only block store. Blocks are written one after the
+ * other into fixed-size segment files that are memory-mapped, so reads go
+ * through the page cache instead of the heap and chains far larger than the
+ * heap stay usable. Blocks are decoded only when they are read.
+ *
+ * <p>
+ * Each record in a segment is laid out as:
+ * </p>
+ * <pre>
+ * int    payload length (0 marks the end of the segment)
+ * int    CRC32C of the hash and the payload
+ * byte[] 32-byte block hash
+ * byte[] payload, the block in the {@link BlockCodec} format
+ * </pre>
+ *
+ * <p>
+ * The only state kept on the heap is an index from height to record location
+ * (eight bytes per block). It is rebuilt on open by walking the record
+ * lengths, without decoding any block. Block hashes are kept in the record
+ * header so they can be read without decoding the block.
+ * </p>
+ *
+ * <p>
+ * A clean {@link #close()} leaves a mark naming the number of records written
+ * and the hash of the last one. Opening the store consumes the mark and checks
+ * the checksums of the records past it only, so a restart costs one header
+ * read per block rather than reading every payload. Without a matching mark,
+ * for example after a crash, every record is checked. A record whose checksum
+ * does not match, such as one torn by a crash, ends the chain.
+ * </p>
+ *
+ * <p>
+ * Reads may run concurrently with an append, which publishes a record only
+ * after writing it in full. Appends and truncations are not thread-safe;
+ * callers serialize them. A {@link #snapshot()} never changes: a truncation
+ * decodes the blocks it cuts off before overwriting their records and hands
+ * them to the snapshots taken before it, so cutting off deep branches costs
+ * heap in proportion to the blocks cut.
+ * </p>
+ */
+public class MappedBlockStore implements BlockStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedBlockStore.class);
+
+    /**
+     * Size of a new segment file unless a single block needs more.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".blk";
+    private static final String MARK_FILE = "verified.mark";
+    private static final int HASH_LENGTH = 32;
+    private static final int RECORD_HEADER_LENGTH = Integer.BYTES + Integer.BYTES + HASH_LENGTH;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private volatile long[] locations = new long[1024];
+    private volatile int size;
+    private volatile Generation generation = new Generation();
+
+    /**
+     * Opens the store in the given directory with the default segment size,
+     * creating the directory if needed.
+     *
+     * @param directory the directory holding the segment files
+     * @throws BlockStoreRuntimeException if the store cannot be opened
+     */
+    public MappedBlockStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the store in the given directory, creating the directory if
+     * needed.
+     *
+     * @param directory the directory holding the segment files
+     * @param segmentSize the size of new segment files in bytes
+     * @throws BlockStoreRuntimeException if the store cannot be opened
+     */
+    public MappedBlockStore(Path directory, int segmentSize) {
+        if (segmentSize <= RECORD_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            load();
+        } catch (IOException e) {
+            throw new BlockStoreRuntimeException("Failed to open block store in " + directory, e);
+        }
+        logger.info("Opened block store in {} with {} blocks.", directory, size);
+    }
+
+    @Override
+    public void append(Block block) {
+        byte[] hash = StringUtil.fromHex(block.getHash());
+        byte[] payload = BlockCodec.encode(block);
+        int recordLength = RECORD_HEADER_LENGTH + payload.length;
+
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.end + recordLength > segment.buffer.capacity()) {
+            segment = createSegment(segments.size(), Math.max(segmentSize, recordLength));
+        }
+
+        int offset = segment.end;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.put(offset + 2 * Integer.BYTES, hash);
+        buffer.put(offset + RECORD_HEADER_LENGTH, payload);
+        buffer.putInt(offset + Integer.BYTES, checksum(hash, payload));
+        // The length goes last: until it is written the record does not exist.
+        buffer.putInt(offset, payload.length);
+        buffer.force(offset, recordLength);
+        segment.end += recordLength;
+
+        if (size == locations.length) {
+            locations = Arrays.copyOf(locations, size * 2);
+        }
+        locations[size] = location(segments.size() - 1, offset);
+        size++;
+    }
+
+    @Override
+    public Block get(int height) {
+        if (height < 0 || height >= size) {
+            throw new IndexOutOfBoundsException("No block at height " + height + ", store has " + size);
+        }
+        return BlockCodec.decode(readPayload(height));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<Block> snapshot() {
+        // Read the generation first: a truncation lowers the size before it starts a new generation.
+        Generation current = generation;
+        return new Snapshot(current, size);
+    }
+
+    @Override
+    public String getHash(int height) {
+        if (height < 0 || height >= size) {
+            throw new IndexOutOfBoundsException("No block at height " + height + ", store has " + size);
+        }
+        return StringUtil.toHex(readHash(locations[height]));
+    }
+
+    @Override
+    public void truncate(int height) {
+        if (height < 0 || height > size) {
+            throw new IndexOutOfBoundsException("Cannot truncate " + size + " blocks to " + height);
+        }
+        if (height == size) {
+            return;
+        }
+        List<Block> cut = new ArrayList<>(size - height);
+        for (int i = height; i < size; i++) {
+            cut.add(get(i));
+        }
+        Generation current = generation;
+        current.cutHeight = height;
+        current.next = new Generation();
+        current.cut = cut;
+        size = height;
+        generation = current.next;
+
+        int keptSegment = segmentOf(locations[height]);
+        int offset = offsetOf(locations[height]);
+        try {
+            for (int i = segments.size() - 1; i > keptSegment; i--) {
+                Files.deleteIfExists(segments.remove(i).path);
+            }
+        } catch (IOException e) {
+            throw new BlockStoreRuntimeException("Failed to remove segments above height " + height, e);
+        }
+        Segment segment = segments.get(keptSegment);
+        zero(segment.buffer, offset, segment.end);
+        segment.buffer.force();
+        segment.end = offset;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        if (size > 0) {
+            byte[] mark = ByteBuffer.allocate(Integer.BYTES + HASH_LENGTH)
+                    .putInt(size)
+                    .put(readHash(locations[size - 1]))
+                    .array();
+            try {
+                Files.write(directory.resolve(MARK_FILE), mark);
+            } catch (IOException e) {
+                logger.warn("Failed to write the verified mark; the next open checks every record.", e);
+            }
+        }
+        segments.clear();
+        size = 0;
+    }
+
+    /**
+     * Consumes the mark left by the last clean close and loads the segments,
+     * trusting the records it vouches for. If the mark does not match the
+     * records found, everything is loaded again with every checksum checked.
+     */
+    private void load() throws IOException {
+        Path markFile = directory.resolve(MARK_FILE);
+        byte[] mark = Files.exists(markFile) ? Files.readAllBytes(markFile) : new byte[0];
+        // The mark only vouches for a clean close; without it a crash from here on is caught by the checksums.
+        Files.deleteIfExists(markFile);
+        int verified = mark.length == Integer.BYTES + HASH_LENGTH ? ByteBuffer.wrap(mark).getInt() : 0;
+        if (verified <= 0) {
+            loadSegments(0);
+            return;
+        }
+        loadSegments(verified);
+        if (size < verified || !Arrays.equals(readHash(locations[verified - 1]),
+                Arrays.copyOfRange(mark, Integer.BYTES, mark.length))) {
+            logger.warn("Verified mark does not match the records in {}; checking every record.", directory);
+            segments.clear();
+            size = 0;
+            loadSegments(0);
+        }
+    }
+
+    /**
+     * Maps every existing segment and rebuilds the location index from the
+     * record headers.
+     *
+     * @param verified the number of leading records whose checksums are
+     * skipped
+     */
+    private void loadSegments(int verified) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            Segment segment;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            }
+            segments.add(segment);
+            if (!scan(segment, i, verified)) {
+                // A damaged record can only be the last one written; drop anything after it.
+                for (int j = files.size() - 1; j > i; j--) {
+                    Files.deleteIfExists(files.get(j));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Indexes the records of a segment. Every record length is bounds-checked;
+     * checksums are checked only from the given record number on.
+     *
+     * @return false if the segment ended in a damaged record
+     */
+    private boolean scan(Segment segment, int segmentIndex, int verified) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + RECORD_HEADER_LENGTH <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - offset - RECORD_HEADER_LENGTH
+                    || size >= verified && !checksumMatches(buffer, offset, length)) {
+                logger.warn("Discarding damaged record at offset {} of {}.", offset, segment.path);
+                zero(buffer, offset, buffer.capacity());
+                buffer.force();
+                segment.end = offset;
+                return false;
+            }
+            if (size == locations.length) {
+                locations = Arrays.copyOf(locations, size * 2);
+            }
+            locations[size] = location(segmentIndex, offset);
+            size++;
+            offset += RECORD_HEADER_LENGTH + length;
+        }
+        segment.end = offset;
+        return true;
+    }
+
+    private Segment createSegment(int index, int capacity) {
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            Segment segment = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            channel.force(true);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new BlockStoreRuntimeException("Failed to create segment " + path, e);
+        }
+    }
+
+    private byte[] readPayload(int height) {
+        long location = locations[height];
+        MappedByteBuffer buffer = segments.get(segmentOf(location)).buffer;
+        int offset = offsetOf(location);
+        byte[] payload = new byte[buffer.getInt(offset)];
+        buffer.get(offset + RECORD_HEADER_LENGTH, payload);
+        return payload;
+    }
+
+    private byte[] readHash(long location) {
+        byte[] hash = new byte[HASH_LENGTH];
+        segments.get(segmentOf(location)).buffer.get(offsetOf(location) + 2 * Integer.BYTES, hash);
+        return hash;
+    }
+
+    private static boolean checksumMatches(MappedByteBuffer buffer, int offset, int length) {
+        byte[] hash = new byte[HASH_LENGTH];
+        byte[] payload = new byte[length];
+        buffer.get(offset + 2 * Integer.BYTES, hash);
+        buffer.get(offset + RECORD_HEADER_LENGTH, payload);
+        return buffer.getInt(offset + Integer.BYTES) == checksum(hash, payload);
+    }
+
+    private static int checksum(byte[] hash, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(hash);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void zero(MappedByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private static long location(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * The stretch of the store's history between two truncations. Once a
+     * truncation ends it, the generation holds the blocks cut off and points
+     * to the generation that follows, which has the same blocks below the cut.
+     */
+    private static final class Generation {
+
+        private int cutHeight;
+        private Generation next;
+        // Written last, so it publishes cutHeight and next.
+        private volatile List<Block> cut;
+    }
+
+    /**
+     * A fixed-size view of the store as it was when taken. Heights a later
+     * truncation cut off come from the blocks it decoded; the rest are read
+     * from the records, which are intact as long as no truncation has ended
+     * the generation they were read in.
+     */
+    private final class Snapshot extends AbstractList<Block> implements RandomAccess {
+
+        private final Generation generation;
+        private final int size;
+
+        Snapshot(Generation generation, int size) {
+            this.generation = generation;
+            this.size = size;
+        }
+
+        @Override
+        public Block get(int height) {
+            Objects.checkIndex(height, size);
+            Generation current = generation;
+            while (true) {
+                List<Block> cut = current.cut;
+                if (cut != null) {
+                    if (height >= current.cutHeight) {
+                        return cut.get(height - current.cutHeight);
+                    }
+                    current = current.next;
+                    continue;
+                }
+                try {
+                    byte[] payload = readPayload(height);
+                    // The record is only trusted if no truncation began while it was read.
+                    VarHandle.acquireFence();
+                    if (current.cut == null) {
+                        return BlockCodec.decode(payload);
+                    }
+                } catch (RuntimeException e) {
+                    if (current.cut == null) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A mapped segment file and the offset where the next record goes.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int end;
+
+        Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
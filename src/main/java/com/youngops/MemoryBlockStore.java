@@ -0,0 +1,108 @@
+package com.youngops;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A block store that keeps every block on the heap. Blocks are returned as
+ * the same instances that were appended.
+ *
+ * <p>
+ * Blocks are held in fixed-size segments that are never modified once a
+ * reader can see them: an append fills the next free slot and then publishes
+ * a new immutable {@link State} through a volatile field, and a truncation
+ * copies the segment it cuts. Reads are therefore lock-free and a
+ * {@link #snapshot()} never changes. Writers must be serialized by the caller.
+ * </p>
+ */
+public class MemoryBlockStore implements BlockStore {
+
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private volatile State state = new State(new Block[0][], 0);
+
+    @Override
+    public void append(Block block) {
+        State current = state;
+        Block[][] segments = current.segments;
+        int segment = current.size >>> SEGMENT_SHIFT;
+        if (segment == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segment] = new Block[SEGMENT_SIZE];
+        }
+        segments[segment][current.size & (SEGMENT_SIZE - 1)] = block;
+        state = new State(segments, current.size + 1);
+    }
+
+    @Override
+    public Block get(int height) {
+        return state.get(height);
+    }
+
+    @Override
+    public int size() {
+        return state.size;
+    }
+
+    @Override
+    public String getHash(int height) {
+        return state.get(height).getHash();
+    }
+
+    @Override
+    public void truncate(int height) {
+        State current = state;
+        if (height < 0 || height > current.size) {
+            throw new IndexOutOfBoundsException("Cannot truncate " + current.size + " blocks to " + height);
+        }
+        int keptSegments = (height + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT;
+        Block[][] segments = Arrays.copyOf(current.segments, keptSegments);
+        if ((height & (SEGMENT_SIZE - 1)) != 0) {
+            // Older snapshots still read the cut slots, so later appends must not reuse them.
+            Block[] last = new Block[SEGMENT_SIZE];
+            System.arraycopy(segments[keptSegments - 1], 0, last, 0, height & (SEGMENT_SIZE - 1));
+            segments[keptSegments - 1] = last;
+        }
+        state = new State(segments, height);
+    }
+
+    @Override
+    public List<Block> snapshot() {
+        return state;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release.
+    }
+
+    /**
+     * An immutable view of the first {@code size} blocks.
+     */
+    private static final class State extends AbstractList<Block> implements RandomAccess {
+
+        private final Block[][] segments;
+        private final int size;
+
+        State(Block[][] segments, int size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        @Override
+        public Block get(int height) {
+            if (height < 0 || height >= size) {
+                throw new IndexOutOfBoundsException("No block at height " + height + ", store has " + size);
+            }
+            return segments[height >>> SEGMENT_SHIFT][height & (SEGMENT_SIZE - 1)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.youngops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A thread-safe pool of signed transactions waiting to be put into a block.
+ *
+ * <p>
+ * Any number of threads may {@link #submit(Transaction) submit} transactions
+ * concurrently. A transaction is admitted only if its signature verifies, it is
+ * not already pending (transactions are keyed by their hash) and it passes the
+ * pool's admission policy. Submitters only touch lock-free structures, so they
+ * never wait for a block builder or for mining.
+ * </p>
+ *
+ * <p>
+ * Block builders take transactions in arrival order with
+ * {@link #nextBatch(int, int)}, capped both by count and by encoded size.
+ * Builders serialize among themselves on a lock submitters never take.
+ * </p>
+ */
+public final class Mempool {
+
+    private static final Logger logger = LoggerFactory.getLogger(Mempool.class);
+
+    /**
+     * Default maximum number of pending transactions.
+     */
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    /**
+     * Outcome of submitting a transaction.
+     */
+    public enum Admission {
+        /** The transaction was added to the pool. */
+        ACCEPTED,
+        /** A transaction with the same hash is already pending. */
+        DUPLICATE,
+        /** The transaction is unsigned or its signature does not verify. */
+        INVALID_SIGNATURE,
+        /** The admission policy turned the transaction away. */
+        REJECTED,
+        /** The pool holds its maximum number of transactions. */
+        FULL
+    }
+
+    private final int capacity;
+    private final Predicate<Transaction> admissionPolicy;
+    private final ConcurrentHashMap<String, Entry> pending = new ConcurrentHashMap<>();
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private Entry carried;
+
+    /**
+     * Constructs a pool with the default capacity that admits every correctly
+     * signed transaction.
+     */
+    public Mempool() {
+        this(DEFAULT_CAPACITY, tx -> true);
+    }
+
+    /**
+     * Constructs a pool.
+     *
+     * @param capacity the maximum number of pending transactions
+     * @param admissionPolicy decides whether a correctly signed transaction is
+     * admitted, for example by checking the sender's balance; called
+     * concurrently from submitting threads
+     * @throws IllegalArgumentException if capacity is less than one
+     */
+    public Mempool(int capacity, Predicate<Transaction> admissionPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Mempool capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    /**
+     * Submits a transaction. Verifies its signature on the calling thread. A
+     * transaction that is already pending is reported as a duplicate even when
+     * the pool is full.
+     *
+     * @param transaction the signed transaction
+     * @return the outcome of the submission
+     */
+    public Admission submit(Transaction transaction) {
+        if (!hasValidSignature(transaction)) {
+            return Admission.INVALID_SIGNATURE;
+        }
+        if (!admissionPolicy.test(transaction)) {
+            return Admission.REJECTED;
+        }
+        Entry entry = new Entry(transaction.getId(), transaction, BlockCodec.encode(transaction).length);
+        if (pending.putIfAbsent(entry.id, entry) != null) {
+            return Admission.DUPLICATE;
+        }
+        if (size.incrementAndGet() > capacity) {
+            // A concurrent remove may already have taken the entry and its count.
+            if (pending.remove(entry.id, entry)) {
+                size.decrementAndGet();
+            }
+            return Admission.FULL;
+        }
+        queue.offer(entry);
+        return Admission.ACCEPTED;
+    }
+
+    /**
+     * Removes and returns the oldest pending transactions, stopping before the
+     * batch would exceed either limit. A single transaction larger than
+     * maxBytes is returned on its own so it cannot stall the pool.
+     *
+     * @param maxCount the maximum number of transactions
+     * @param maxBytes the maximum total size of the transactions in the
+     * {@link BlockCodec} encoding
+     * @return the batch, empty if nothing is pending
+     * @throws IllegalArgumentException if a limit is less than one
+     */
+    public List<Transaction> nextBatch(int maxCount, int maxBytes) {
+        if (maxCount < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Batch limits must be positive, got " + maxCount + " and " + maxBytes);
+        }
+        List<Transaction> batch = new ArrayList<>(Math.min(maxCount, size.get()));
+        takeLock.lock();
+        try {
+            long bytes = 0;
+            while (batch.size() < maxCount) {
+                Entry entry = carried != null ? carried : queue.poll();
+                carried = null;
+                if (entry == null) {
+                    break;
+                }
+                if (pending.get(entry.id) != entry) {
+                    // Removed after it was queued.
+                    continue;
+                }
+                if (!batch.isEmpty() && bytes + entry.encodedSize > maxBytes) {
+                    // Keep it for the next batch rather than reordering the queue.
+                    carried = entry;
+                    break;
+                }
+                if (!pending.remove(entry.id, entry)) {
+                    continue;
+                }
+                size.decrementAndGet();
+                batch.add(entry.transaction);
+                bytes += entry.encodedSize;
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        logger.debug("Took a batch of {} transactions, {} still pending.", batch.size(), size.get());
+        return batch;
+    }
+
+    /**
+     * Removes a pending transaction, for example because a block received
+     * from elsewhere already holds it. The entry is dropped from the queue
+     * lazily, when a batch reaches it.
+     *
+     * @param transactionHash the hash of the transaction
+     * @return true if the transaction was pending
+     */
+    public boolean remove(String transactionHash) {
+        if (pending.remove(transactionHash) == null) {
+            return false;
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Checks whether a transaction is pending.
+     *
+     * @param transactionHash the hash of the transaction
+     * @return true if the transaction is waiting in the pool
+     */
+    public boolean contains(String transactionHash) {
+        return pending.containsKey(transactionHash);
+    }
+
+    /**
+     * Returns the number of pending transactions.
+     *
+     * @return the number of pending transactions
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Checks a signature, treating unsigned transactions and verification
+     * errors as invalid so a bad submission cannot hurt the submitting thread.
+     */
+    private static boolean hasValidSignature(Transaction transaction) {
+        if (transaction.getSignature() == null || transaction.getSenderPublicKey() == null) {
+            return false;
+        }
+        try {
+            return transaction.verifySignature();
+        } catch (RuntimeException e) {
+            logger.debug("Rejected transaction from {}: {}", transaction.getSender(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * A pending transaction with its hash and encoded size.
+     */
+    private static final class Entry {
+
+        private final String id;
+        private final Transaction transaction;
+        private final int encodedSize;
+
+        Entry(String id, Transaction transaction, int encodedSize) {
+            this.id = id;
+            this.transaction = transaction;
+            this.encodedSize = encodedSize;
+        }
+    }
+}
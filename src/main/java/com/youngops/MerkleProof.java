@@ -0,0 +1,85 @@
+package com.youngops;
+
+import java.util.Arrays;
+
+/**
+ * An inclusion proof for one leaf of a {@link MerkleTree}. The proof holds the
+ * sibling of every node on the path from the leaf to the root, together with
+ * the side each sibling is on, so its size grows with the logarithm of the
+ * number of leaves.
+ *
+ * @see MerkleTree#getProof(int)
+ * @see MerkleTree#verifyProof(byte[], MerkleProof, byte[])
+ */
+public final class MerkleProof {
+
+    private final int leafIndex;
+    private final byte[] siblings;
+    private final boolean[] siblingOnLeft;
+
+    /**
+     * Constructs a proof from its sibling path.
+     *
+     * @param leafIndex the index of the proven leaf
+     * @param siblings the sibling digests from the leaf level upwards, stored
+     * back to back
+     * @param siblingOnLeft for each sibling, whether it is the left child of
+     * the parent
+     * @throws IllegalArgumentException if the sibling array does not match
+     * the number of flags
+     */
+    public MerkleProof(int leafIndex, byte[] siblings, boolean[] siblingOnLeft) {
+        if (siblings.length != siblingOnLeft.length * MerkleTree.HASH_LENGTH) {
+            throw new IllegalArgumentException("Proof needs one " + MerkleTree.HASH_LENGTH
+                    + "-byte sibling per flag, got " + siblings.length + " bytes for "
+                    + siblingOnLeft.length + " flags");
+        }
+        this.leafIndex = leafIndex;
+        this.siblings = siblings.clone();
+        this.siblingOnLeft = siblingOnLeft.clone();
+    }
+
+    /**
+     * Returns the index of the proven leaf.
+     *
+     * @return the leaf index
+     */
+    public int getLeafIndex() {
+        return leafIndex;
+    }
+
+    /**
+     * Returns the number of siblings on the path, which is the height of the
+     * tree.
+     *
+     * @return the length of the proof
+     */
+    public int size() {
+        return siblingOnLeft.length;
+    }
+
+    /**
+     * Returns a sibling on the path.
+     *
+     * @param step the step, zero being the sibling of the leaf
+     * @return a copy of the sibling's digest
+     */
+    public byte[] getSibling(int step) {
+        int offset = step * MerkleTree.HASH_LENGTH;
+        return Arrays.copyOfRange(siblings, offset, offset + MerkleTree.HASH_LENGTH);
+    }
+
+    /**
+     * Returns whether a sibling is the left child of its parent.
+     *
+     * @param step the step, zero being the sibling of the leaf
+     * @return true if the sibling is hashed before the path node
+     */
+    public boolean isSiblingOnLeft(int step) {
+        return siblingOnLeft[step];
+    }
+
+    byte[] siblings() {
+        return siblings;
+    }
+}
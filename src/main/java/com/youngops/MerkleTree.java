@@ -1,80 +1,300 @@
 package com.youngops;
 
-import java.nio.charset.StandardCharsets;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
+import java.security.DigestException;
+import java.security.MessageDigest;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Represents a Merkle Tree, which is a binary tree used to efficiently and
  * securely verify the integrity of data.
+ *
+ * <p>
+ * The tree works on raw 32-byte SHA-256 digests. All levels are built
+ * iteratively into one flat byte array, leaves first and the root last, and are
+ * kept so later queries do not need to rehash anything. A parent is the
+ * SHA-256 of its two children concatenated; a level with an odd number of
+ * nodes pairs its last node with itself. Large levels are hashed in parallel
+ * on the common fork-join pool.
+ * </p>
  */
 public class MerkleTree {
 
-    private final List<String> transactions;
+    /**
+     * Length in bytes of every node of the tree.
+     */
+    public static final int HASH_LENGTH = 32;
 
     /**
-     * Constructs a MerkleTree with the given list of transactions.
+     * Number of hashes below which a level is hashed on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private final byte[] nodes;
+    private final int[] levelOffsets;
+    private final int[] levelSizes;
+
+    /**
+     * Constructs a MerkleTree over leaf digests stored back to back in one
+     * array.
      *
-     * @param transactions the list of transactions to be included in the Merkle
-     * Tree
+     * @param leaves the leaf digests, {@value #HASH_LENGTH} bytes each
+     * @param leafCount the number of leaves in the array
+     * @throws IllegalArgumentException if the array is shorter than leafCount
+     * digests
      */
-    public MerkleTree(List<String> transactions) {
-        this.transactions = transactions;
+    public MerkleTree(byte[] leaves, int leafCount) {
+        if (leafCount < 0 || leaves.length < leafCount * HASH_LENGTH) {
+            throw new IllegalArgumentException("Leaf array holds fewer than " + leafCount + " digests");
+        }
+        int levels = 1;
+        int total = leafCount;
+        for (int size = leafCount; size > 1; size = (size + 1) / 2) {
+            total += (size + 1) / 2;
+            levels++;
+        }
+        this.nodes = new byte[total * HASH_LENGTH];
+        this.levelOffsets = new int[levels];
+        this.levelSizes = new int[levels];
+        System.arraycopy(leaves, 0, nodes, 0, leafCount * HASH_LENGTH);
+        levelSizes[0] = leafCount;
+        build();
     }
 
     /**
-     * Returns the Merkle Root of the transactions.
+     * Constructs a MerkleTree whose leaves are the hashes of the given
+     * transactions. Large transaction lists are hashed in parallel.
+     *
+     * @param transactions the transactions to be included in the Merkle Tree
+     * @return the Merkle Tree over the transaction hashes
+     */
+    public static MerkleTree ofTransactions(List<Transaction> transactions) {
+        int count = transactions.size();
+        byte[] leaves = new byte[count * HASH_LENGTH];
+        LeafHashTask task = new LeafHashTask(transactions, leaves, 0, count);
+        if (count >= PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return new MerkleTree(leaves, count);
+    }
+
+    /**
+     * Returns the Merkle Root of the tree. An empty tree has a root of all
+     * zeros.
      *
      * @return the Merkle Root as a hexadecimal string
      */
     public String getMerkleRoot() {
-        return constructMerkleTree(this.transactions);
+        return StringUtil.toHex(getRoot());
     }
 
     /**
-     * Recursively constructs the Merkle Tree and returns the Merkle Root.
+     * Returns the raw Merkle Root of the tree. An empty tree has a root of all
+     * zeros.
      *
-     * @param transactions the list of transactions to construct the Merkle Tree
-     * from
-     * @return the Merkle Root as a hexadecimal string
+     * @return a copy of the {@value #HASH_LENGTH}-byte root
      */
-    private String constructMerkleTree(List<String> transactions) {
-        if (transactions.size() == 1) {
-            return transactions.get(0);
+    public byte[] getRoot() {
+        if (getLeafCount() == 0) {
+            return new byte[HASH_LENGTH];
         }
+        return getNode(levelSizes.length - 1, 0);
+    }
+
+    /**
+     * Returns the number of leaves of the tree.
+     *
+     * @return the number of leaves
+     */
+    public int getLeafCount() {
+        return levelSizes[0];
+    }
+
+    /**
+     * Returns the number of levels of the tree, counting the leaves and the
+     * root.
+     *
+     * @return the number of levels
+     */
+    public int getLevelCount() {
+        return levelSizes.length;
+    }
 
-        List<String> updatedList = new ArrayList<>();
-        for (int i = 0; i < transactions.size(); i += 2) {
-            String left = transactions.get(i);
-            String right = (i + 1 < transactions.size()) ? transactions.get(i + 1) : left;
-            updatedList.add(applySha256(left + right));
+    /**
+     * Returns the number of nodes on a level.
+     *
+     * @param level the level, zero being the leaves
+     * @return the number of nodes on the level
+     */
+    public int getLevelSize(int level) {
+        return levelSizes[level];
+    }
+
+    /**
+     * Returns a node of the tree.
+     *
+     * @param level the level, zero being the leaves
+     * @param index the position of the node within its level
+     * @return a copy of the node's digest
+     * @throws IndexOutOfBoundsException if the node does not exist
+     */
+    public byte[] getNode(int level, int index) {
+        if (index < 0 || index >= levelSizes[level]) {
+            throw new IndexOutOfBoundsException("Level " + level + " has no node " + index);
         }
+        byte[] node = new byte[HASH_LENGTH];
+        System.arraycopy(nodes, (levelOffsets[level] + index) * HASH_LENGTH, node, 0, HASH_LENGTH);
+        return node;
+    }
 
-        return constructMerkleTree(updatedList);
+    /**
+     * Returns the inclusion proof for a leaf: the sibling of each node on the
+     * path from the leaf up to the root. Siblings are read from the retained
+     * levels, so nothing is hashed.
+     *
+     * @param leafIndex the index of the leaf
+     * @return the inclusion proof
+     * @throws IndexOutOfBoundsException if the leaf does not exist
+     */
+    public MerkleProof getProof(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= getLeafCount()) {
+            throw new IndexOutOfBoundsException("Tree has no leaf " + leafIndex);
+        }
+        int steps = levelSizes.length - 1;
+        byte[] siblings = new byte[steps * HASH_LENGTH];
+        boolean[] siblingOnLeft = new boolean[steps];
+        int index = leafIndex;
+        for (int level = 0; level < steps; level++) {
+            int sibling = Math.min(index ^ 1, levelSizes[level] - 1);
+            siblingOnLeft[level] = (index & 1) == 1;
+            System.arraycopy(nodes, (levelOffsets[level] + sibling) * HASH_LENGTH, siblings,
+                    level * HASH_LENGTH, HASH_LENGTH);
+            index >>>= 1;
+        }
+        return new MerkleProof(leafIndex, siblings, siblingOnLeft);
     }
 
     /**
-     * Applies the SHA-256 hash function to the given input string.
+     * Checks an inclusion proof by hashing the leaf up the sibling path and
+     * comparing the result with the root.
      *
-     * @param input the input string to be hashed
-     * @return the SHA-256 hash as a hexadecimal string
+     * @param leaf the leaf digest
+     * @param proof the proof for the leaf
+     * @param root the expected root
+     * @return true if the proof leads from the leaf to the root
+     */
+    public static boolean verifyProof(byte[] leaf, MerkleProof proof, byte[] root) {
+        MessageDigest digest = CryptoEngines.sha256();
+        byte[] siblings = proof.siblings();
+        byte[] node = leaf;
+        for (int step = 0; step < proof.size(); step++) {
+            if (proof.isSiblingOnLeft(step)) {
+                digest.update(siblings, step * HASH_LENGTH, HASH_LENGTH);
+                digest.update(node);
+            } else {
+                digest.update(node);
+                digest.update(siblings, step * HASH_LENGTH, HASH_LENGTH);
+            }
+            node = digest.digest();
+        }
+        return MessageDigest.isEqual(node, root);
+    }
+
+    /**
+     * Builds every level above the leaves, one level at a time.
+     */
+    private void build() {
+        for (int level = 1; level < levelSizes.length; level++) {
+            int childOffset = levelOffsets[level - 1];
+            int childSize = levelSizes[level - 1];
+            levelOffsets[level] = childOffset + childSize;
+            levelSizes[level] = (childSize + 1) / 2;
+            LevelHashTask task = new LevelHashTask(nodes, childOffset, childSize, levelOffsets[level], 0,
+                    levelSizes[level]);
+            if (levelSizes[level] >= PARALLEL_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(task);
+            } else {
+                task.compute();
+            }
+        }
+    }
+
+    /**
+     * Hashes a range of parent nodes of one level from their children.
      */
-    private String applySha256(String input) {
-        try {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
+    private static final class LevelHashTask extends RecursiveAction {
+
+        private final byte[] nodes;
+        private final int childOffset;
+        private final int childSize;
+        private final int parentOffset;
+        private final int from;
+        private final int to;
+
+        LevelHashTask(byte[] nodes, int childOffset, int childSize, int parentOffset, int from, int to) {
+            this.nodes = nodes;
+            this.childOffset = childOffset;
+            this.childSize = childSize;
+            this.parentOffset = parentOffset;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LevelHashTask(nodes, childOffset, childSize, parentOffset, from, mid),
+                        new LevelHashTask(nodes, childOffset, childSize, parentOffset, mid, to));
+                return;
+            }
+            MessageDigest digest = CryptoEngines.sha256();
+            for (int parent = from; parent < to; parent++) {
+                int left = 2 * parent;
+                int right = Math.min(left + 1, childSize - 1);
+                digest.update(nodes, (childOffset + left) * HASH_LENGTH, HASH_LENGTH);
+                digest.update(nodes, (childOffset + right) * HASH_LENGTH, HASH_LENGTH);
+                try {
+                    digest.digest(nodes, (parentOffset + parent) * HASH_LENGTH, HASH_LENGTH);
+                } catch (DigestException e) {
+                    throw new IllegalStateException("Failed to hash merkle level", e);
                 }
-                hexString.append(hex);
             }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Hashes a range of transactions into the leaf array.
+     */
+    private static final class LeafHashTask extends RecursiveAction {
+
+        private final List<Transaction> transactions;
+        private final byte[] leaves;
+        private final int from;
+        private final int to;
+
+        LeafHashTask(List<Transaction> transactions, byte[] leaves, int from, int to) {
+            this.transactions = transactions;
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LeafHashTask(transactions, leaves, from, mid),
+                        new LeafHashTask(transactions, leaves, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                byte[] leaf = transactions.get(i).getIdBytes();
+                System.arraycopy(leaf, 0, leaves, i * HASH_LENGTH, HASH_LENGTH);
+            }
         }
     }
 }
@@ -0,0 +1,411 @@
+package com.youngops;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a network of {@link GossipNode}s in one JVM and measures how blocks and
+ * transactions spread between them.
+ *
+ * <p>
+ * Each node connects to the next few nodes around a ring, so most messages
+ * cross several hops. A run first mines enough coinbase blocks to fund the
+ * spender, then gossips signed transactions into random nodes and
+ * has a randomly chosen node mine each block from its own mempool, on top of
+ * whatever tip it knows. Miners do not wait for the previous block to reach
+ * them, so competing blocks, side branches and reorganizations occur as they
+ * would between real nodes. The run ends once every node has the same tip;
+ * if the last blocks leave a tie between branches of equal work, an extra
+ * empty block is mined to break it.
+ * </p>
+ */
+public final class NetworkSimulator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkSimulator.class);
+
+    /**
+     * How long a miner waits for its mempool to fill up before it mines a
+     * smaller block.
+     */
+    private static final Duration FILL_WAIT = Duration.ofMillis(200);
+
+    /**
+     * How long the nodes may disagree on the tip before an empty block is
+     * mined to break a tie between branches of equal work.
+     */
+    private static final Duration TIE_BREAK_WAIT = Duration.ofSeconds(1);
+
+    private static final long POLL_MILLIS = 5;
+
+    /**
+     * The account every simulated transaction spends from.
+     */
+    private static final String SPENDER = "Alice";
+
+    private final List<GossipNode> nodes = new ArrayList<>();
+    private final Random random;
+    private volatile LatencyHistogram propagation = new LatencyHistogram();
+    private volatile LatencyHistogram fullPropagation = new LatencyHistogram();
+    private final Map<String, Long> minedAt = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> reached = new ConcurrentHashMap<>();
+    private int tieBreakBlocks;
+
+    /**
+     * Starts the nodes and connects them.
+     *
+     * @param nodeCount the number of nodes
+     * @param peersPerNode the number of following nodes on the ring each node
+     * connects to
+     * @param params the consensus parameters shared by the nodes
+     * @param seed the seed choosing where transactions enter and who mines
+     * @throws IllegalArgumentException if nodeCount or peersPerNode is less
+     * than one
+     */
+    public NetworkSimulator(int nodeCount, int peersPerNode, ChainParams params, long seed) {
+        if (nodeCount < 1 || peersPerNode < 1) {
+            throw new IllegalArgumentException("Need at least one node and one peer per node, got " + nodeCount
+                    + " and " + peersPerNode);
+        }
+        this.random = new Random(seed);
+        for (int i = 0; i < nodeCount; i++) {
+            GossipNode node = new GossipNode("node-" + i, params);
+            node.setBlockListener(this::onBlock);
+            nodes.add(node);
+        }
+        Set<Long> links = new HashSet<>();
+        for (int i = 0; i < nodeCount; i++) {
+            for (int step = 1; step <= Math.min(peersPerNode, nodeCount - 1); step++) {
+                int j = (i + step) % nodeCount;
+                if (links.add((long) Math.min(i, j) << 32 | Math.max(i, j))) {
+                    nodes.get(i).connect(nodes.get(j).getAddress());
+                }
+            }
+        }
+        logger.debug("Started {} nodes with {} links.", nodeCount, links.size());
+    }
+
+    /**
+     * Returns the nodes of the network.
+     *
+     * @return the nodes, in ring order
+     */
+    public List<GossipNode> getNodes() {
+        return List.copyOf(nodes);
+    }
+
+    /**
+     * Mines the given number of blocks across the network, then waits for the
+     * nodes to agree on the tip. The blocks funding the spender are mined
+     * beforehand and are not part of the measurements.
+     *
+     * @param blockCount the number of blocks to mine
+     * @param transactionsPerBlock the number of transactions gossiped before
+     * each block and the most a block holds
+     * @param timeout how long to wait for the nodes to agree on the tip
+     * @return the measurements of the run
+     */
+    public Report run(int blockCount, int transactionsPerBlock, Duration timeout) {
+        List<List<Transaction>> rounds = createTransactions(blockCount, transactionsPerBlock);
+        fund(rounds, timeout);
+        long blocksReceivedBefore = sum(GossipNode::getBlocksReceived);
+        long orphansBefore = sum(GossipNode::getOrphansReceived);
+        int heightBefore = nodes.get(0).getBlockchain().getChain().size() - 1;
+
+        tieBreakBlocks = 0;
+        propagation = new LatencyHistogram();
+        fullPropagation = new LatencyHistogram();
+        minedAt.clear();
+        reached.clear();
+        long start = System.nanoTime();
+        for (List<Transaction> round : rounds) {
+            for (Transaction tx : round) {
+                nodes.get(random.nextInt(nodes.size())).submitTransaction(tx);
+            }
+            GossipNode miner = nodes.get(random.nextInt(nodes.size()));
+            long fillDeadline = System.nanoTime() + FILL_WAIT.toNanos();
+            while (miner.getMempool().size() < transactionsPerBlock && System.nanoTime() < fillDeadline) {
+                pause();
+            }
+            miner.mineBlock(transactionsPerBlock, Integer.MAX_VALUE);
+        }
+        boolean converged = awaitConvergence(timeout);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Block> chain = nodes.get(0).getBlockchain().getChain();
+        Set<String> confirmed = new HashSet<>();
+        for (Block block : chain.subList(heightBefore + 1, chain.size())) {
+            for (Transaction tx : block.getTransactions()) {
+                if (!tx.isCoinbase()) {
+                    confirmed.add(tx.getId());
+                }
+            }
+        }
+        long blocksReceived = sum(GossipNode::getBlocksReceived) - blocksReceivedBefore;
+        long orphans = sum(GossipNode::getOrphansReceived) - orphansBefore;
+        return new Report(nodes.size(), transactionsPerBlock, blockCount + tieBreakBlocks,
+                chain.size() - 1 - heightBefore, blocksReceived, orphans, confirmed.size(), seconds, converged, propagation.snapshot(),
+                fullPropagation.snapshot());
+    }
+
+    /**
+     * Closes every node.
+     */
+    @Override
+    public void close() {
+        for (GossipNode node : nodes) {
+            node.close();
+        }
+    }
+
+    /**
+     * Runs the simulation for growing numbers of nodes and block sizes and
+     * logs a report for each.
+     *
+     * @param args optionally the number of blocks per run.
+     */
+    public static void main(String[] args) {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int bits = Difficulty.fromLeadingZeros(2);
+        ChainParams params = new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE, bits, bits);
+        for (int nodeCount : new int[] { 2, 4, 8 }) {
+            for (int blockSize : new int[] { 10, 100, 500 }) {
+                try (NetworkSimulator simulator = new NetworkSimulator(nodeCount, 2, params, 42)) {
+                    logger.info("{}", simulator.run(blocks, blockSize, Duration.ofSeconds(30)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records how long a block took to reach a node since it was mined. The
+     * miner offers its block to its own chain before anyone else sees it, so
+     * the first time a hash shows up is the time it was mined.
+     */
+    private void onBlock(Block block, Blockchain.Acceptance acceptance) {
+        if (acceptance == Blockchain.Acceptance.DUPLICATE || acceptance == Blockchain.Acceptance.ORPHAN
+                || acceptance == Blockchain.Acceptance.INVALID) {
+            return;
+        }
+        long now = System.nanoTime();
+        Long mined = minedAt.putIfAbsent(block.getHash(), now);
+        int count = reached.computeIfAbsent(block.getHash(), hash -> new AtomicInteger()).incrementAndGet();
+        if (mined == null) {
+            return;
+        }
+        propagation.record(now - mined);
+        if (count == nodes.size()) {
+            fullPropagation.record(now - mined);
+        }
+    }
+
+    private List<List<Transaction>> createTransactions(int blockCount, int transactionsPerBlock) {
+        Wallet wallet = new Wallet();
+        List<TransactionSigner.Request> requests = new ArrayList<>();
+        for (int i = 0; i < blockCount * transactionsPerBlock; i++) {
+            Transaction tx = new Transaction(SPENDER, "Bob-" + random.nextInt(1000), 1 + random.nextInt(10),
+                    wallet.getPublicKey());
+            requests.add(new TransactionSigner.Request(tx, wallet.getPrivateKey()));
+        }
+        TransactionSigner.getDefault().signAll(requests);
+        List<List<Transaction>> rounds = new ArrayList<>(blockCount);
+        for (int b = 0; b < blockCount; b++) {
+            List<Transaction> round = new ArrayList<>(transactionsPerBlock);
+            for (int i = 0; i < transactionsPerBlock; i++) {
+                round.add(requests.get(b * transactionsPerBlock + i).getTransaction());
+            }
+            rounds.add(round);
+        }
+        return rounds;
+    }
+
+    /**
+     * Mines coinbase blocks paying the spender on the first node until it can
+     * afford every transaction of the run, then waits for the other nodes to
+     * receive them.
+     */
+    private void fund(List<List<Transaction>> rounds, Duration timeout) {
+        long total = 0;
+        for (List<Transaction> round : rounds) {
+            for (Transaction tx : round) {
+                total += tx.getAmount();
+            }
+        }
+        GossipNode funder = nodes.get(0);
+        while (funder.getBlockchain().balanceOf(SPENDER) < total) {
+            funder.mineBlock(1, Integer.MAX_VALUE, SPENDER);
+        }
+        awaitConvergence(timeout);
+    }
+
+    /**
+     * Waits until every node has the same tip, mining an empty block on the
+     * first node whenever the nodes stay split for too long.
+     *
+     * @return true if the nodes agreed before the timeout
+     */
+    private boolean awaitConvergence(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long tieBreak = System.nanoTime() + TIE_BREAK_WAIT.toNanos();
+        while (System.nanoTime() < deadline) {
+            Set<String> tips = new HashSet<>();
+            for (GossipNode node : nodes) {
+                List<Block> chain = node.getBlockchain().getChain();
+                tips.add(chain.get(chain.size() - 1).getHash());
+            }
+            if (tips.size() == 1) {
+                return true;
+            }
+            if (System.nanoTime() > tieBreak) {
+                nodes.get(0).mineBlock(1, Integer.MAX_VALUE);
+                tieBreakBlocks++;
+                tieBreak = System.nanoTime() + TIE_BREAK_WAIT.toNanos();
+            }
+            pause();
+        }
+        logger.warn("Nodes did not agree on a tip within {}.", timeout);
+        return false;
+    }
+
+    private long sum(ToLongFunction<GossipNode> counter) {
+        return nodes.stream().mapToLong(counter).sum();
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the network", e);
+        }
+    }
+
+    /**
+     * The measurements of one run.
+     */
+    public static final class Report {
+
+        private final int nodeCount;
+        private final int blockSize;
+        private final int blocksMined;
+        private final int blocksConfirmed;
+        private final long blocksReceived;
+        private final long orphans;
+        private final int transactionsConfirmed;
+        private final double seconds;
+        private final boolean converged;
+        private final LatencySnapshot propagation;
+        private final LatencySnapshot fullPropagation;
+
+        Report(int nodeCount, int blockSize, int blocksMined, int blocksConfirmed, long blocksReceived,
+                long orphans, int transactionsConfirmed, double seconds, boolean converged,
+                LatencySnapshot propagation, LatencySnapshot fullPropagation) {
+            this.nodeCount = nodeCount;
+            this.blockSize = blockSize;
+            this.blocksMined = blocksMined;
+            this.blocksConfirmed = blocksConfirmed;
+            this.blocksReceived = blocksReceived;
+            this.orphans = orphans;
+            this.transactionsConfirmed = transactionsConfirmed;
+            this.seconds = seconds;
+            this.converged = converged;
+            this.propagation = propagation;
+            this.fullPropagation = fullPropagation;
+        }
+
+        /**
+         * Returns the number of nodes in the network.
+         *
+         * @return the number of nodes
+         */
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * Returns the number of blocks mined during the run.
+         *
+         * @return the number of mined blocks
+         */
+        public int getBlocksMined() {
+            return blocksMined;
+        }
+
+        /**
+         * Returns the number of blocks the run added to the agreed main
+         * branch. The other mined blocks went stale on side branches.
+         *
+         * @return the number of confirmed blocks
+         */
+        public int getBlocksConfirmed() {
+            return blocksConfirmed;
+        }
+
+        /**
+         * Returns the share of blocks received from peers whose parent was not
+         * yet known.
+         *
+         * @return the orphan rate, between zero and one
+         */
+        public double getOrphanRate() {
+            return blocksReceived == 0 ? 0 : orphans / (double) blocksReceived;
+        }
+
+        /**
+         * Returns the number of distinct transactions confirmed per second
+         * over the run.
+         *
+         * @return the confirmed transactions per second
+         */
+        public double getThroughput() {
+            return seconds == 0 ? 0 : transactionsConfirmed / seconds;
+        }
+
+        /**
+         * Returns whether every node ended on the same tip.
+         *
+         * @return true if the nodes agreed
+         */
+        public boolean isConverged() {
+            return converged;
+        }
+
+        /**
+         * Returns how long blocks took to reach each other node after they
+         * were mined.
+         *
+         * @return the per-node propagation latency
+         */
+        public LatencySnapshot getPropagation() {
+            return propagation;
+        }
+
+        /**
+         * Returns how long blocks took to reach every node after they were
+         * mined, for blocks that did.
+         *
+         * @return the network-wide propagation latency
+         */
+        public LatencySnapshot getFullPropagation() {
+            return fullPropagation;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d nodes, %d tx/block: %d/%d blocks confirmed, orphan rate %.3f, %.1f tx/s, "
+                    + "converged %s%n  propagation %s%n  full propagation %s", nodeCount, blockSize, blocksConfirmed,
+                    blocksMined, getOrphanRate(), getThroughput(), converged, propagation, fullPropagation);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.youngops;
+
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache from encoded public keys to parsed
+ * {@link PublicKey} instances. Most transactions are signed by a small set of
+ * senders, so caching the parsed keys lets repeat verifications skip the Base64
+ * decoding and the X.509 parsing entirely.
+ *
+ * <p>
+ * Keys are the Base64 strings stored in {@link Transaction}, which encode the
+ * same bytes as the X.509 key and need no decoding to look up. When the cache
+ * is full the oldest entries are evicted first.
+ * </p>
+ */
+public final class PublicKeyCache {
+
+    /**
+     * Number of keys held by the shared cache.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, PublicKey> keys = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity the maximum number of keys held
+     * @throws IllegalArgumentException if capacity is less than one
+     */
+    public PublicKeyCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cache shared by all transactions.
+     *
+     * @return the shared cache
+     */
+    public static PublicKeyCache getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the parsed public key for an encoded key, parsing and caching it
+     * on a miss.
+     *
+     * @param encodedKey the Base64 encoded X.509 public key
+     * @return the parsed public key
+     * @throws InvalidKeySpecException if the key cannot be parsed
+     */
+    public PublicKey get(String encodedKey) throws InvalidKeySpecException {
+        PublicKey key = keys.get(encodedKey);
+        if (key != null) {
+            hits.increment();
+            return key;
+        }
+        misses.increment();
+        key = CryptoEngines.keyFactory().generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encodedKey)));
+        if (keys.putIfAbsent(encodedKey, key) == null) {
+            insertionOrder.add(encodedKey);
+            evictOverflow();
+        }
+        return key;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to parse the key.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of keys evicted to stay within capacity.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of keys currently cached.
+     *
+     * @return the number of cached keys
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Removes all cached keys. The counters are kept.
+     */
+    public void clear() {
+        keys.clear();
+        insertionOrder.clear();
+    }
+
+    private void evictOverflow() {
+        while (keys.size() > capacity) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (keys.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Lazily creates the shared cache on first use.
+     */
+    private static final class DefaultHolder {
+
+        private static final PublicKeyCache INSTANCE = new PublicKeyCache(DEFAULT_CAPACITY);
+    }
+}
@@ -0,0 +1,81 @@
+package com.youngops;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and tracks their rate as an exponentially weighted moving
+ * average over about one minute, like the load average of a Unix system. The
+ * average is advanced lazily in five-second ticks by whichever thread marks or
+ * reads the meter, so there is no background thread. The thread that moves
+ * the tick time forward runs the due ticks on its own, so neither marking nor
+ * ticking takes a lock.
+ */
+final class RateMeter {
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double ALPHA = 1 - Math.exp(-5.0 / 60);
+    private static final int MAX_TICKS = 1000;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder uncounted = new LongAdder();
+    private final AtomicLong lastTick = new AtomicLong(System.nanoTime());
+    private volatile double rate;
+    private volatile boolean initialized;
+
+    /**
+     * Records events.
+     *
+     * @param events the number of events
+     */
+    void mark(long events) {
+        tickIfNeeded();
+        count.add(events);
+        uncounted.add(events);
+    }
+
+    /**
+     * Returns the total number of events.
+     *
+     * @return the count
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the one-minute moving average rate.
+     *
+     * @return events per second
+     */
+    double getOneMinuteRate() {
+        tickIfNeeded();
+        return rate;
+    }
+
+    private void tickIfNeeded() {
+        long previous = lastTick.get();
+        long age = System.nanoTime() - previous;
+        if (age < TICK_NANOS) {
+            return;
+        }
+        long next = previous + age - age % TICK_NANOS;
+        if (lastTick.compareAndSet(previous, next)) {
+            long ticks = Math.min(age / TICK_NANOS, MAX_TICKS);
+            for (long i = 0; i < ticks; i++) {
+                tick();
+            }
+        }
+    }
+
+    private void tick() {
+        double instantRate = uncounted.sumThenReset() / 5.0;
+        if (initialized) {
+            rate += ALPHA * (instantRate - rate);
+        } else {
+            rate = instantRate;
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.youngops;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the signatures of many transactions in parallel. Workers claim
+ * chunks of the list from a shared cursor and stop as soon as a failure is
+ * known at a lower position than anything they have left to check.
+ *
+ * <p>
+ * The outcome is the same as verifying the transactions one by one in order:
+ * the first transaction in the list that fails decides the result, so the
+ * verifier returns false if that transaction has an invalid signature and
+ * rethrows its exception if verifying it threw.
+ * </p>
+ */
+public final class SignatureVerifier {
+
+    /**
+     * Number of transactions below which verification stays on the calling
+     * thread.
+     */
+    static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int CHUNK_SIZE = 16;
+
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Constructs a verifier running its workers on the given executor.
+     *
+     * @param executor the executor running the verification workers
+     * @param parallelism the number of workers submitted per call
+     * @throws IllegalArgumentException if parallelism is less than one
+     */
+    public SignatureVerifier(Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Verifier needs at least one worker, got " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns a verifier running on the common fork-join pool.
+     *
+     * @return the shared verifier
+     */
+    public static SignatureVerifier getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Verifies the signatures of all transactions.
+     *
+     * @param transactions the transactions to verify
+     * @return true if every signature is valid, false otherwise
+     * @throws RuntimeException the exception thrown by the first transaction
+     * whose verification failed with an exception
+     */
+    public boolean verifyAll(List<Transaction> transactions) {
+        int size = transactions.size();
+        if (size < PARALLEL_THRESHOLD || parallelism == 1) {
+            for (Transaction tx : transactions) {
+                if (!tx.verifySignature()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger firstFailure = new AtomicInteger(size);
+        Map<Integer, RuntimeException> errors = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = CompletableFuture.runAsync(
+                    () -> verifyChunks(transactions, cursor, firstFailure, errors), executor);
+        }
+        try {
+            CompletableFuture.allOf(workers).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Signature verification worker failed", e.getCause());
+        }
+
+        int failed = firstFailure.get();
+        if (failed == size) {
+            return true;
+        }
+        RuntimeException error = errors.get(failed);
+        if (error != null) {
+            throw error;
+        }
+        return false;
+    }
+
+    private static void verifyChunks(List<Transaction> transactions, AtomicInteger cursor,
+            AtomicInteger firstFailure, Map<Integer, RuntimeException> errors) {
+        int size = transactions.size();
+        int start;
+        while ((start = cursor.getAndAdd(CHUNK_SIZE)) < firstFailure.get()) {
+            int end = Math.min(start + CHUNK_SIZE, size);
+            for (int i = start; i < end && i < firstFailure.get(); i++) {
+                try {
+                    if (!transactions.get(i).verifySignature()) {
+                        firstFailure.accumulateAndGet(i, Math::min);
+                    }
+                } catch (RuntimeException e) {
+                    errors.put(i, e);
+                    firstFailure.accumulateAndGet(i, Math::min);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lazily creates the shared verifier on first use.
+     */
+    private static final class DefaultHolder {
+
+        private static final SignatureVerifier INSTANCE = new SignatureVerifier(ForkJoinPool.commonPool(),
+                ForkJoinPool.getCommonPoolParallelism());
+    }
+}
@@ -2,8 +2,6 @@ package com.youngops;
 
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
@@ -12,7 +10,7 @@ import java.util.Base64;
 
 public class StringUtil {
 
-    private static final String ALGORITHM = "Ed25519";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     /**
      * Private constructor to prevent instantiation. Throws
@@ -30,21 +28,46 @@ public class StringUtil {
      * @return the SHA-256 hash of the input string in hexadecimal format
      */
     public static String applySha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (int i = 0; i < hash.length; i++) {
-                String hex = Integer.toHexString(0xff & hash[i]);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+        return toHex(CryptoEngines.sha256().digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Encodes bytes as a lowercase hexadecimal string.
+     *
+     * @param bytes the bytes to encode
+     * @return the hexadecimal representation of the bytes
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >>> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decodes a hexadecimal string into bytes.
+     *
+     * @param hex the hexadecimal string, in upper or lower case
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the string has an odd length or
+     * contains a non-hexadecimal character
+     */
+    public static byte[] fromHex(String hex) {
+        if ((hex.length() & 1) != 0) {
+            throw new IllegalArgumentException("Hex string must have an even length: " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex string: " + hex);
             }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+            bytes[i] = (byte) ((high << 4) | low);
         }
+        return bytes;
     }
 
     /**
@@ -57,11 +80,11 @@ public class StringUtil {
      */
     public static String signData(String data, PrivateKey privateKey) {
         try {
-            Signature signature = Signature.getInstance(ALGORITHM);
+            Signature signature = CryptoEngines.signature();
             signature.initSign(privateKey);
             signature.update(data.getBytes(StandardCharsets.UTF_8));
             return Base64.getEncoder().encodeToString(signature.sign());
-        } catch (InvalidKeyException | NoSuchAlgorithmException | SignatureException e) {
+        } catch (InvalidKeyException | SignatureException e) {
             throw new RuntimeException(e);
         }
     }
@@ -77,12 +100,12 @@ public class StringUtil {
      */
     public static boolean verifySignature(String data, String signatureStr, PublicKey publicKey) {
         try {
-            Signature signature = Signature.getInstance(ALGORITHM);
+            Signature signature = CryptoEngines.signature();
             signature.initVerify(publicKey);
             signature.update(data.getBytes(StandardCharsets.UTF_8));
             byte[] signatureBytes = Base64.getDecoder().decode(signatureStr);
             return signature.verify(signatureBytes);
-        } catch (InvalidKeyException | NoSuchAlgorithmException | SignatureException e) {
+        } catch (InvalidKeyException | SignatureException e) {
             throw new RuntimeException(e);
         }
     }
@@ -1,15 +1,16 @@
 package com.youngops;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
 import org.slf4j.Logger;
@@ -17,6 +18,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Represents a transaction in a blockchain system.
+ *
+ * <p>
+ * Every field except the signature is fixed at construction, so the canonical
+ * encoding that is signed is built once and kept with the transaction. The
+ * transaction id, a SHA-256 hash over that encoding and the signature, is
+ * cached as well and recomputed only after the transaction is signed again.
+ * </p>
  */
 public class Transaction {
 
@@ -27,11 +35,19 @@ public class Transaction {
      */
     public static final String SIGNING_ALGORITHM = "Ed25519";
 
+    /**
+     * Prefix of the sender of a coinbase transaction, followed by the height
+     * of the block that issues it.
+     */
+    public static final String COINBASE_PREFIX = "Coinbase:";
+
     private final String sender;
     private final String recipient;
     private final int amount;
     private final String senderPublicKey;
     private String signature;
+    private transient volatile byte[] signingPayload;
+    private transient volatile Id id;
 
     /**
      * Constructs a new Transaction.
@@ -61,6 +77,51 @@ public class Transaction {
         this.senderPublicKey = Base64.getEncoder().encodeToString(senderPublicKey.getEncoded());
     }
 
+    /**
+     * Reconstructs a transaction from its stored fields, for example when
+     * decoding it from the binary format.
+     *
+     * @param sender the sender's identifier
+     * @param recipient the recipient's identifier
+     * @param amount the amount to be transferred
+     * @param senderPublicKey the Base64 encoded public key of the sender, or
+     * null for the genesis transaction
+     * @param signature the Base64 encoded signature, or null if unsigned
+     */
+    Transaction(String sender, String recipient, int amount, String senderPublicKey, String signature) {
+        this.sender = sender;
+        this.recipient = recipient;
+        this.amount = amount;
+        this.senderPublicKey = senderPublicKey;
+        this.signature = signature;
+    }
+
+    /**
+     * Creates a coinbase transaction, which issues new funds to its recipient.
+     * It is unsigned and names the height of its block as the sender, so
+     * coinbases of different blocks never share an id. A block may hold one,
+     * as its first transaction, for at most {@link ChainParams#BLOCK_REWARD}.
+     *
+     * @param height the height of the block that will hold the transaction
+     * @param recipient the account credited with the new funds
+     * @param amount the amount issued
+     * @return the coinbase transaction
+     */
+    public static Transaction coinbase(int height, String recipient, int amount) {
+        return new Transaction(COINBASE_PREFIX + height, recipient, amount, null, null);
+    }
+
+    /**
+     * Checks whether the transaction is a coinbase, which credits its
+     * recipient without debiting any account.
+     *
+     * @return true for an unsigned transaction from a coinbase sender
+     * @see #coinbase(int, String, int)
+     */
+    public boolean isCoinbase() {
+        return sender.startsWith(COINBASE_PREFIX) && senderPublicKey == null && signature == null;
+    }
+
     /**
      * Signs the transaction using the provided private key.
      *
@@ -68,50 +129,155 @@ public class Transaction {
      * @throws RuntimeException if signing fails
      */
     public void signTransaction(PrivateKey privateKey) {
-        String data = sender + recipient + amount;
         try {
-            Signature sig = Signature.getInstance(SIGNING_ALGORITHM, "BC");
+            Signature sig = CryptoEngines.signature();
             sig.initSign(privateKey);
-            sig.update(data.getBytes());
+            sig.update(getSigningPayload());
             byte[] signatureBytes = sig.sign();
             this.signature = Base64.getEncoder().encodeToString(signatureBytes);
-            logger.info("Transaction signed successfully.");
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException
-                | SignatureException e) {
+            logger.debug("Transaction signed successfully.");
+        } catch (InvalidKeyException | SignatureException e) {
             throw new RuntimeException(
                     "Failed to sign transaction for sender " + sender + " to recipient " + recipient, e);
         }
     }
 
     /**
-     * Verifies the signature of the transaction.
+     * Verifies the signature of the transaction. The sender's public key is
+     * parsed once and then served from the {@link PublicKeyCache}. Each call
+     * is counted and timed in {@link ChainMetrics}. A coinbase carries no
+     * signature and passes; where it may appear and what it may issue is
+     * checked by {@link ChainParams#hasValidCoinbase(Block)}.
      *
      * @return true if the signature is valid, false otherwise
      * @throws RuntimeException if verification fails
      */
     public boolean verifySignature() {
-        String data = sender + recipient + amount;
+        if (isCoinbase()) {
+            return true;
+        }
+        long start = System.nanoTime();
         try {
-            Signature sig = Signature.getInstance(SIGNING_ALGORITHM, "BC");
-            byte[] publicKeyBytes = Base64.getDecoder().decode(senderPublicKey);
-            KeyFactory keyFactory = KeyFactory.getInstance(SIGNING_ALGORITHM, "BC");
-            PublicKey pubKey = keyFactory.generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            Signature sig = CryptoEngines.signature();
+            PublicKey pubKey = PublicKeyCache.getDefault().get(senderPublicKey);
             sig.initVerify(pubKey);
-            sig.update(data.getBytes());
+            sig.update(getSigningPayload());
             boolean isValid = sig.verify(Base64.getDecoder().decode(signature));
+            ChainMetrics.getDefault().recordVerification(System.nanoTime() - start, isValid);
             if (isValid) {
-                logger.info("Signature verified successfully.");
+                logger.debug("Signature verified successfully.");
             } else {
                 logger.warn("Signature verification failed.");
             }
             return isValid;
-        } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidKeyException
-                | SignatureException | InvalidKeySpecException e) {
+        } catch (InvalidKeyException | SignatureException | InvalidKeySpecException e) {
             throw new RuntimeException(
                     "Failed to verify signature for transaction from " + sender + " to " + recipient, e);
         }
     }
 
+    /**
+     * Returns the canonical encoding of the signed fields: the sender and the
+     * recipient in UTF-8, the amount and the sender's public key, each string
+     * preceded by its length in bytes, so names of any length encode. Unlike
+     * a plain concatenation, no two transactions share an encoding. It is
+     * built on first use and then reused.
+     *
+     * @return the signed payload; callers must not modify it
+     */
+    byte[] getSigningPayload() {
+        byte[] payload = signingPayload;
+        if (payload == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeString(out, sender);
+                writeString(out, recipient);
+                out.writeInt(amount);
+                writeField(out, senderPublicKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to encode transaction from " + sender + " to " + recipient, e);
+            }
+            payload = bytes.toByteArray();
+            signingPayload = payload;
+        }
+        return payload;
+    }
+
+    /**
+     * Returns the id of the transaction, the SHA-256 hash of its signed payload
+     * followed by its signature. This is the leaf committed to by the merkle
+     * root of the block holding the transaction and the key it is indexed by.
+     *
+     * @return the hex encoded transaction id
+     */
+    public String getId() {
+        return id().hex;
+    }
+
+    /**
+     * Returns the hash of the transaction, which is its id.
+     *
+     * @return the hex encoded SHA-256 hash of the transaction
+     * @see #getId()
+     */
+    public String calculateHash() {
+        return getId();
+    }
+
+    /**
+     * Returns the raw id of the transaction.
+     *
+     * @return the 32-byte transaction id; callers must not modify it
+     * @see #getId()
+     */
+    byte[] getIdBytes() {
+        return id().bytes;
+    }
+
+    /**
+     * Returns the cached id, computing it again if the transaction was signed
+     * since it was cached.
+     */
+    private Id id() {
+        Id current = id;
+        String currentSignature = signature;
+        if (current == null || current.signature != currentSignature) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.write(getSigningPayload());
+                writeField(out, currentSignature);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to encode transaction from " + sender + " to " + recipient, e);
+            }
+            current = new Id(currentSignature, CryptoEngines.sha256().digest(bytes.toByteArray()));
+            id = current;
+        }
+        return current;
+    }
+
+    /**
+     * Writes a string as its UTF-8 bytes preceded by their length.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    /**
+     * Writes an optional Base64 field as its decoded bytes preceded by their
+     * length, or a length of -1 when the field is absent.
+     */
+    private static void writeField(DataOutputStream out, String base64) throws IOException {
+        if (base64 == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] decoded = Base64.getDecoder().decode(base64);
+        out.writeInt(decoded.length);
+        out.write(decoded);
+    }
+
     /**
      * Gets the sender's identifier.
      *
@@ -156,4 +322,20 @@ public class Transaction {
     public String getSignature() {
         return signature;
     }
+
+    /**
+     * A transaction id together with the signature it was computed for.
+     */
+    private static final class Id {
+
+        private final String signature;
+        private final byte[] bytes;
+        private final String hex;
+
+        Id(String signature, byte[] bytes) {
+            this.signature = signature;
+            this.bytes = bytes;
+            this.hex = StringUtil.toHex(bytes);
+        }
+    }
 }
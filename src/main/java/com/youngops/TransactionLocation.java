@@ -0,0 +1,70 @@
+package com.youngops;
+
+/**
+ * The position of a transaction in the blockchain: the height of its block
+ * and its index within the block.
+ */
+public final class TransactionLocation {
+
+    private final int height;
+    private final int position;
+
+    /**
+     * Constructs a new TransactionLocation.
+     *
+     * @param height the height of the block holding the transaction
+     * @param position the index of the transaction within the block
+     */
+    public TransactionLocation(int height, int position) {
+        this.height = height;
+        this.position = position;
+    }
+
+    /**
+     * Returns the height of the block holding the transaction.
+     *
+     * @return the block height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the index of the transaction within its block.
+     *
+     * @return the position in the block
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TransactionLocation)) {
+            return false;
+        }
+        TransactionLocation location = (TransactionLocation) other;
+        return height == location.height && position == location.position;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * height + position;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionLocation[height=" + height + ", position=" + position + "]";
+    }
+
+    long pack() {
+        return ((long) height << 32) | (position & 0xffffffffL);
+    }
+
+    static TransactionLocation unpack(long packed) {
+        return new TransactionLocation((int) (packed >>> 32), (int) packed);
+    }
+}
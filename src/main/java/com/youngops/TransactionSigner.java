@@ -0,0 +1,232 @@
+package com.youngops;
+
+import java.security.PrivateKey;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Signs many transactions in parallel. Workers claim chunks of the batch from
+ * a shared cursor and sign on their own thread's cached signature engine, so
+ * a batch of payouts costs little more than the signing work itself divided
+ * by the number of workers.
+ *
+ * <p>
+ * A transaction that cannot be signed, for example because its key is
+ * invalid, does not stop the batch: every other transaction is still signed
+ * and the failure is reported for that position in the {@link Result}.
+ * </p>
+ */
+public final class TransactionSigner {
+
+    /**
+     * Number of transactions below which signing stays on the calling thread.
+     */
+    static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int CHUNK_SIZE = 16;
+
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Constructs a signer running its workers on the given executor.
+     *
+     * @param executor the executor running the signing workers
+     * @param parallelism the number of workers submitted per batch
+     * @throws IllegalArgumentException if parallelism is less than one
+     */
+    public TransactionSigner(Executor executor, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Signer needs at least one worker, got " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns a signer running on the common fork-join pool.
+     *
+     * @return the shared signer
+     */
+    public static TransactionSigner getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Signs every transaction of the batch with its key. Blocks until the
+     * whole batch has been processed.
+     *
+     * @param requests the transactions to sign, each with its signing key
+     * @return the outcome for each position of the batch
+     */
+    public Result signAll(List<Request> requests) {
+        int size = requests.size();
+        AtomicReferenceArray<RuntimeException> errors = new AtomicReferenceArray<>(size);
+        if (size < PARALLEL_THRESHOLD || parallelism == 1) {
+            for (int i = 0; i < size; i++) {
+                sign(requests, i, errors);
+            }
+            return new Result(errors);
+        }
+
+        AtomicInteger cursor = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = CompletableFuture.runAsync(() -> signChunks(requests, cursor, errors), executor);
+        }
+        try {
+            CompletableFuture.allOf(workers).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Transaction signing worker failed", e.getCause());
+        }
+        return new Result(errors);
+    }
+
+    private static void signChunks(List<Request> requests, AtomicInteger cursor,
+            AtomicReferenceArray<RuntimeException> errors) {
+        int size = requests.size();
+        int start;
+        while ((start = cursor.getAndAdd(CHUNK_SIZE)) < size) {
+            int end = Math.min(start + CHUNK_SIZE, size);
+            for (int i = start; i < end; i++) {
+                sign(requests, i, errors);
+            }
+        }
+    }
+
+    private static void sign(List<Request> requests, int position, AtomicReferenceArray<RuntimeException> errors) {
+        try {
+            Request request = requests.get(position);
+            request.transaction.signTransaction(request.privateKey);
+        } catch (RuntimeException e) {
+            errors.set(position, e);
+        }
+    }
+
+    /**
+     * A transaction to sign together with the key to sign it with.
+     */
+    public static final class Request {
+
+        private final Transaction transaction;
+        private final PrivateKey privateKey;
+
+        /**
+         * Constructs a signing request.
+         *
+         * @param transaction the transaction to sign
+         * @param privateKey the sender's private key
+         */
+        public Request(Transaction transaction, PrivateKey privateKey) {
+            this.transaction = transaction;
+            this.privateKey = privateKey;
+        }
+
+        /**
+         * Returns the transaction to sign.
+         *
+         * @return the transaction
+         */
+        public Transaction getTransaction() {
+            return transaction;
+        }
+    }
+
+    /**
+     * The outcome of signing a batch, by position in the batch.
+     */
+    public static final class Result {
+
+        private final AtomicReferenceArray<RuntimeException> errors;
+        private final int failureCount;
+
+        Result(AtomicReferenceArray<RuntimeException> errors) {
+            this.errors = errors;
+            int failures = 0;
+            for (int i = 0; i < errors.length(); i++) {
+                if (errors.get(i) != null) {
+                    failures++;
+                }
+            }
+            this.failureCount = failures;
+        }
+
+        /**
+         * Returns the number of transactions in the batch.
+         *
+         * @return the batch size
+         */
+        public int size() {
+            return errors.length();
+        }
+
+        /**
+         * Returns the number of transactions that were signed.
+         *
+         * @return the number of signed transactions
+         */
+        public int getSignedCount() {
+            return errors.length() - failureCount;
+        }
+
+        /**
+         * Returns the number of transactions that could not be signed.
+         *
+         * @return the number of failures
+         */
+        public int getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * Checks whether every transaction of the batch was signed.
+         *
+         * @return true if there were no failures
+         */
+        public boolean isSuccess() {
+            return failureCount == 0;
+        }
+
+        /**
+         * Returns why the transaction at the given position was not signed.
+         *
+         * @param position the position in the batch
+         * @return the failure, or null if the transaction was signed
+         */
+        public RuntimeException getFailure(int position) {
+            return errors.get(position);
+        }
+
+        /**
+         * Returns every failure keyed by its position in the batch.
+         *
+         * @return the failures in batch order
+         */
+        public Map<Integer, RuntimeException> getFailures() {
+            Map<Integer, RuntimeException> failures = new TreeMap<>();
+            for (int i = 0; i < errors.length() && failures.size() < failureCount; i++) {
+                if (errors.get(i) != null) {
+                    failures.put(i, errors.get(i));
+                }
+            }
+            return Collections.unmodifiableMap(failures);
+        }
+    }
+
+    /**
+     * Lazily creates the shared signer on first use.
+     */
+    private static final class DefaultHolder {
+
+        private static final TransactionSigner INSTANCE = new TransactionSigner(ForkJoinPool.commonPool(),
+                ForkJoinPool.getCommonPoolParallelism());
+    }
+}
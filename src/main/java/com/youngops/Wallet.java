@@ -1,15 +1,10 @@
 package com.youngops;
 
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.Security;
 import java.util.Base64;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,16 +20,11 @@ public class Wallet {
     private PublicKey publicKey;
 
     /**
-     * Constructor for Wallet. Initializes the BouncyCastle security provider if
-     * not already present and generates a key pair.
+     * Constructor for Wallet. Generates a key pair on the calling thread's
+     * shared key pair generator.
      */
     public Wallet() {
-        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-            Security.addProvider(new BouncyCastleProvider());
-        }
         generateKeyPair();
-        System.out
-                .println("Wallet created with PublicKey: " + (publicKey != null ? publicKey : "NULL"));
     }
 
     /**
@@ -43,17 +33,12 @@ public class Wallet {
      * pair.
      */
     private void generateKeyPair() {
-        try {
-            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("Ed25519", "BC");
-            KeyPair keyPair = keyGen.generateKeyPair();
-            this.privateKey = keyPair.getPrivate();
-            this.publicKey = keyPair.getPublic();
-            logger.info("Generated new key pair.");
-            if (logger.isInfoEnabled()) {
-                logger.info("Public Key: {}", Base64.getEncoder().encodeToString(publicKey.getEncoded()));
-            }
-        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
-            throw new RuntimeException("Failed to generate key pair.", e);
+        KeyPair keyPair = CryptoEngines.keyPairGenerator().generateKeyPair();
+        this.privateKey = keyPair.getPrivate();
+        this.publicKey = keyPair.getPublic();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Generated new key pair with public key {}.",
+                    Base64.getEncoder().encodeToString(publicKey.getEncoded()));
         }
     }
 
@@ -0,0 +1,12 @@
+package com.youngops.exception;
+
+public class BlockStoreRuntimeException extends RuntimeException {
+
+    public BlockStoreRuntimeException(String message) {
+        super(message);
+    }
+
+    public BlockStoreRuntimeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
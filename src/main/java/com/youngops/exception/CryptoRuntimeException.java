@@ -0,0 +1,8 @@
+package com.youngops.exception;
+
+public class CryptoRuntimeException extends RuntimeException {
+
+    public CryptoRuntimeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
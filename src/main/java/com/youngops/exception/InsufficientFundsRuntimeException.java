@@ -0,0 +1,8 @@
+package com.youngops.exception;
+
+public class InsufficientFundsRuntimeException extends RuntimeException {
+
+    public InsufficientFundsRuntimeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.youngops.exception;
+
+public class MiningAbortedRuntimeException extends RuntimeException {
+
+    public MiningAbortedRuntimeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.youngops.exception;
+
+public class NetworkRuntimeException extends RuntimeException {
+
+    public NetworkRuntimeException(String message) {
+        super(message);
+    }
+
+    public NetworkRuntimeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package com.youngops.exception;
+
+public class StaleBlockRuntimeException extends RuntimeException {
+
+    public StaleBlockRuntimeException(String message) {
+        super(message);
+    }
+}
@@ -6,10 +6,29 @@
  * <ul>
  * <li>{@link com.youngops.Block}</li>
  * <li>{@link com.youngops.Blockchain}</li>
+ * <li>{@link com.youngops.BlockCodec}</li>
+ * <li>{@link com.youngops.BlockMiner}</li>
+ * <li>{@link com.youngops.BlockStore}</li>
+ * <li>{@link com.youngops.ChainMetrics}</li>
+ * <li>{@link com.youngops.ChainMetricsMXBean}</li>
+ * <li>{@link com.youngops.ChainParams}</li>
  * <li>{@link com.youngops.DengiCoinChain}</li>
+ * <li>{@link com.youngops.Difficulty}</li>
+ * <li>{@link com.youngops.GossipNode}</li>
+ * <li>{@link com.youngops.LatencySnapshot}</li>
+ * <li>{@link com.youngops.LedgerState}</li>
+ * <li>{@link com.youngops.MappedBlockStore}</li>
+ * <li>{@link com.youngops.MemoryBlockStore}</li>
+ * <li>{@link com.youngops.Mempool}</li>
+ * <li>{@link com.youngops.MerkleProof}</li>
  * <li>{@link com.youngops.MerkleTree}</li>
+ * <li>{@link com.youngops.NetworkSimulator}</li>
+ * <li>{@link com.youngops.PublicKeyCache}</li>
+ * <li>{@link com.youngops.SignatureVerifier}</li>
  * <li>{@link com.youngops.StringUtil}</li>
  * <li>{@link com.youngops.Transaction}</li>
+ * <li>{@link com.youngops.TransactionLocation}</li>
+ * <li>{@link com.youngops.TransactionSigner}</li>
  * <li>{@link com.youngops.Wallet}</li>
  * </ul>
  * </p>
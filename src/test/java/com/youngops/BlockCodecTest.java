@@ -0,0 +1,121 @@
+package com.youngops;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.youngops.TestBlocks.EASY_BITS;
+import static com.youngops.TestBlocks.block;
+import static com.youngops.TestBlocks.mine;
+import static com.youngops.TestBlocks.signedTransactions;
+import static com.youngops.TestBlocks.unsigned;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+
+/**
+ * Test class for the BlockCodec class.
+ */
+class BlockCodecTest {
+
+    /**
+     * Tests that a block survives a round trip through a buffer with its hash,
+     * merkle root and signatures intact, and that the encoding is smaller than
+     * the JSON form.
+     */
+    @Test
+    void testBufferRoundTrip() {
+        Block block = mine(block(3, Block.ZERO_HASH, signedTransactions(5, -7, 1_000_000)), EASY_BITS);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        BlockCodec.write(block, buffer);
+        BlockCodec.write(block, buffer);
+        buffer.flip();
+
+        for (int copy = 0; copy < 2; copy++) {
+            Block decoded = BlockCodec.read(buffer);
+            assertEquals(block.getHash(), decoded.calculateHash(), "Decoded block should hash the same.");
+            assertEquals(block.getMerkleRoot(), decoded.calculateMerkleRoot(), "Merkle root should match.");
+            for (Transaction tx : decoded.getTransactions()) {
+                assertTrue(tx.verifySignature(), "Decoded signatures should verify.");
+            }
+        }
+        assertEquals(0, buffer.remaining(), "Both framed blocks should be consumed.");
+
+        int jsonSize = new Gson().toJson(block).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(BlockCodec.encode(block).length < jsonSize / 2, "Binary form should be far smaller than JSON.");
+    }
+
+    /**
+     * Tests that a block survives a round trip through a data stream.
+     */
+    @Test
+    void testStreamRoundTrip() throws Exception {
+        Block block = mine(block(3, Block.ZERO_HASH, signedTransactions(5, -7, 1_000_000)), EASY_BITS);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockCodec.write(block, new DataOutputStream(bytes));
+        Block decoded = BlockCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(block.getHash(), decoded.getHash(), "Stored hash should round trip.");
+        assertEquals(block.getHash(), decoded.calculateHash(), "Decoded block should hash the same.");
+        assertEquals(block.getTransactions().get(1).getAmount(), decoded.getTransactions().get(1).getAmount(),
+                "Amounts should round trip.");
+    }
+
+    /**
+     * Tests that negative and oversized lengths are reported as invalid
+     * encodings rather than failing with another exception.
+     */
+    @Test
+    void testRejectsBadLengths() {
+        // A five-byte varint with the sign bit set decodes to a negative int.
+        byte[] negative = { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f };
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeTransaction(negative),
+                "A negative sender length should be rejected.");
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.read(ByteBuffer.wrap(negative)),
+                "A negative block length should be rejected.");
+        assertThrows(IllegalArgumentException.class,
+                () -> BlockCodec.read(new DataInputStream(new ByteArrayInputStream(negative))),
+                "A negative block length should be rejected on a stream.");
+
+        byte[] encoded = BlockCodec.encode(new Transaction("Alice", "Bob", 1, null, null));
+        byte[] oversized = encoded.clone();
+        oversized[0] = 0x7f;
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeTransaction(oversized),
+                "A length beyond the input should be rejected.");
+    }
+
+    /**
+     * Tests that bytes left over after a block or a transaction and a
+     * negative block index are reported as invalid encodings.
+     */
+    @Test
+    void testRejectsTrailingBytesAndNegativeIndex() {
+        Block block = mine(block(1, Block.ZERO_HASH, unsigned(1)), EASY_BITS);
+        byte[] encoded = BlockCodec.encode(block);
+        byte[] padded = Arrays.copyOf(encoded, encoded.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decode(padded),
+                "A byte after the block should be rejected.");
+        ByteBuffer framed = ByteBuffer.allocate(padded.length + 2);
+        framed.put((byte) (padded.length & 0x7f | 0x80)).put((byte) (padded.length >>> 7)).put(padded).flip();
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.read(framed),
+                "A block shorter than its length prefix should be rejected.");
+
+        byte[] transaction = BlockCodec.encode(new Transaction("Alice", "Bob", 1, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> BlockCodec.decodeTransaction(Arrays.copyOf(transaction, transaction.length + 1)),
+                "A byte after the transaction should be rejected.");
+
+        // The index is the varint right after the version byte; five bytes make it negative.
+        ByteBuffer negative = ByteBuffer.allocate(encoded.length + 4);
+        negative.put(encoded[0]).put(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f })
+                .put(encoded, 2, encoded.length - 2);
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decode(negative.array()),
+                "A negative block index should be rejected.");
+    }
+}
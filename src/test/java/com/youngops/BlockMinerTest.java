@@ -0,0 +1,86 @@
+package com.youngops;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static com.youngops.TestBlocks.block;
+import static com.youngops.TestBlocks.hopeless;
+import static com.youngops.TestBlocks.unsigned;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.youngops.exception.MiningAbortedRuntimeException;
+
+/**
+ * Test class for the BlockMiner class.
+ */
+class BlockMinerTest {
+
+    /**
+     * Tests that a block mined by several workers carries a nonce whose hash
+     * satisfies the difficulty and can be verified with calculateHash.
+     */
+    @Test
+    void testParallelMiningProducesVerifiableHash() {
+        BlockMiner miner = new BlockMiner(4);
+        try {
+            Block block = block(1, Block.ZERO_HASH, unsigned(0));
+            block.mineBlock(3, miner);
+            assertTrue(block.getHash().startsWith("000"), "Hash should satisfy the difficulty.");
+            assertEquals(block.getHash(), block.calculateHash(), "Mined hash should be reproducible.");
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    /**
+     * Tests that asynchronous mining completes with a valid block and that the
+     * attempt and time budgets end hopeless searches.
+     */
+    @Test
+    void testAsyncMiningBudgets() throws Exception {
+        BlockMiner miner = new BlockMiner(2);
+        try {
+            Block block = block(1, Block.ZERO_HASH, unsigned(0))
+                    .mineBlockAsync(Difficulty.fromLeadingZeros(3), miner, Long.MAX_VALUE, null).get();
+            assertTrue(block.getHash().startsWith("000"), "Hash should satisfy the difficulty.");
+            assertEquals(block.getHash(), block.calculateHash(), "Mined hash should be reproducible.");
+
+            ExecutionException exhausted = assertThrows(ExecutionException.class,
+                    () -> miner.mineAsync(hopeless(), 5000, null).get());
+            assertInstanceOf(MiningAbortedRuntimeException.class, exhausted.getCause(),
+                    "Running out of attempts should abort mining.");
+
+            ExecutionException timedOut = assertThrows(ExecutionException.class,
+                    () -> miner.mineAsync(hopeless(), Long.MAX_VALUE, Duration.ofMillis(50)).get());
+            assertInstanceOf(TimeoutException.class, timedOut.getCause(), "Running out of time should abort mining.");
+        } finally {
+            miner.shutdown();
+        }
+    }
+
+    /**
+     * Tests that cancelling asynchronous mining frees the workers for the next
+     * block.
+     */
+    @Test
+    void testCancelStopsWorkers() throws Exception {
+        BlockMiner miner = new BlockMiner(1);
+        try {
+            CompletableFuture<Long> hopeless = miner.mineAsync(hopeless());
+            assertTrue(hopeless.cancel(false), "Mining should be cancellable.");
+            // With a single worker this only completes once the cancelled search has stopped.
+            Block block = block(1, Block.ZERO_HASH, unsigned(0))
+                    .mineBlockAsync(Difficulty.fromLeadingZeros(2), miner, Long.MAX_VALUE, Duration.ofSeconds(30))
+                    .get();
+            assertTrue(block.getHash().startsWith("00"), "The next block should be mined.");
+        } finally {
+            miner.shutdown();
+        }
+    }
+}
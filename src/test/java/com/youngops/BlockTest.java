@@ -0,0 +1,50 @@
+package com.youngops;
+
+import java.util.List;
+
+import static com.youngops.TestBlocks.signedTransactions;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the Block class.
+ */
+class BlockTest {
+
+    /**
+     * Tests that the merkle root stored at construction matches the one
+     * calculated from the transactions, and no longer matches after a
+     * transaction is tampered with.
+     */
+    @Test
+    void testMerkleRootDetectsTampering() throws Exception {
+        List<Transaction> transactions = signedTransactions(1, 2, 3);
+        Block block = new Block(1, transactions, Block.ZERO_HASH);
+        assertEquals(block.getMerkleRoot(), block.calculateMerkleRoot(), "Stored root should match.");
+
+        Transaction original = transactions.get(2);
+        transactions.set(2, new Transaction(original.getSender(), original.getRecipient(), 100,
+                original.getSenderPublicKey(), original.getSignature()));
+        assertNotEquals(block.getMerkleRoot(), block.calculateMerkleRoot(),
+                "Root should change after tampering.");
+    }
+
+    /**
+     * Tests that every transaction of a block can be checked against the
+     * block's merkle root with an inclusion proof.
+     */
+    @Test
+    void testTransactionInclusion() {
+        List<Transaction> transactions = signedTransactions(1, 2, 3, 4, 5);
+        Block block = new Block(1, transactions, Block.ZERO_HASH);
+        for (int i = 0; i < transactions.size(); i++) {
+            assertTrue(Block.verifyInclusion(transactions.get(i), block.getMerkleProof(i), block.getMerkleRoot()),
+                    "Transaction " + i + " should be included.");
+        }
+        assertFalse(Block.verifyInclusion(transactions.get(1), block.getMerkleProof(0), block.getMerkleRoot()),
+                "Proof of another transaction should not verify.");
+    }
+}
@@ -1,14 +1,40 @@
 package com.youngops;
 
-import java.lang.reflect.Field;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static com.youngops.TestBlocks.block;
+import static com.youngops.TestBlocks.mined;
+import static com.youngops.TestBlocks.next;
+import static com.youngops.TestBlocks.signed;
+import static com.youngops.TestBlocks.signedTransactions;
+import static com.youngops.TestBlocks.stamped;
+import static com.youngops.TestBlocks.unsigned;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.youngops.exception.InsufficientFundsRuntimeException;
+import com.youngops.exception.StaleBlockRuntimeException;
 
 class BlockchainTest {
 
@@ -52,19 +78,420 @@ class BlockchainTest {
 
     /**
      * Tests the validity of the Blockchain after tampering with a block.
-     * Ensures that the blockchain becomes invalid after tampering with a
-     * transaction amount.
+     * Ensures that a full revalidation finds the blockchain invalid after
+     * tampering with a transaction amount, even if the block had already been
+     * validated.
      */
     @Test
     void testInvalidBlockchain() throws Exception {
         Blockchain blockchain = Blockchain.getInstance();
         if (blockchain.getChain().size() > 1) {
             Block tamperedBlock = blockchain.getChain().get(1);
-            Transaction tamperedTransaction = tamperedBlock.getTransactions().get(0);
-            Field amountField = tamperedTransaction.getClass().getDeclaredField("amount");
-            amountField.setAccessible(true);
-            amountField.set(tamperedTransaction, 100);
-            assertFalse(Blockchain.isChainValid(), "Blockchain should be invalid after tampering.");
+            Transaction original = tamperedBlock.getTransactions().get(0);
+            tamperedBlock.getTransactions().set(0, new Transaction(original.getSender(), original.getRecipient(), 100,
+                    original.getSenderPublicKey(), original.getSignature()));
+            assertFalse(Blockchain.isChainValid(true), "Blockchain should be invalid after tampering.");
+        }
+    }
+
+    /**
+     * Tests that the streamed JSON export matches toJson and that a block range
+     * can be exported on its own.
+     */
+    @Test
+    void testStreamingJsonExport() throws Exception {
+        Blockchain blockchain = Blockchain.getInstance();
+        StringWriter pretty = new StringWriter();
+        blockchain.writeJson(pretty, true, 0, blockchain.getChain().size());
+        assertEquals(blockchain.toJson(), pretty.toString(), "Streamed export should match toJson.");
+
+        StringWriter compact = new StringWriter();
+        blockchain.writeJson(compact, false, 0, 1);
+        JsonArray blocks = JsonParser.parseString(compact.toString()).getAsJsonArray();
+        assertEquals(1, blocks.size(), "Range should contain only the genesis block.");
+        assertEquals(blockchain.getChain().get(0).getHash(), blocks.get(0).getAsJsonObject().get("hash").getAsString(),
+                "Exported block should be the genesis block.");
+    }
+
+    /**
+     * Tests that a chain snapshot does not change while blocks are added and
+     * can be read from another thread while a block is mined.
+     */
+    @Test
+    void testSnapshotDuringMining() throws Exception {
+        Blockchain blockchain = Blockchain.getInstance();
+        List<Block> snapshot = blockchain.getChain();
+        int size = snapshot.size();
+        Block tip = snapshot.get(size - 1);
+
+        Wallet sender = new Wallet();
+        Transaction tx = new Transaction("Carol", "Dave", 5, sender.getPublicKey());
+        tx.signTransaction(sender.getPrivateKey());
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(tx);
+        Thread miner = new Thread(() -> blockchain.addBlock(new Block(tip.getIndex() + 1, transactions, tip.getHash())));
+        miner.start();
+        while (miner.isAlive()) {
+            for (Block block : blockchain.getChain()) {
+                assertNotNull(block.getHash(), "Readers should see only complete blocks.");
+            }
+        }
+        miner.join();
+
+        assertEquals(size, snapshot.size(), "An earlier snapshot should not see the new block.");
+        assertTrue(blockchain.getChain().size() > size, "A new snapshot should see the new block.");
+    }
+
+    /**
+     * Tests that background mining is cancelled once another block takes the
+     * tip it was building on.
+     */
+    @Test
+    void testAsyncMiningCancelledByNewTip(@TempDir Path directory) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService stalled = Executors.newSingleThreadExecutor();
+        stalled.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try (Blockchain blockchain = Blockchain.open(directory)) {
+            Block tip = blockchain.getChain().get(0);
+            blockchain.setMiner(new BlockMiner(stalled, 1));
+            CompletableFuture<Block> pending = blockchain.addBlockAsync(next(tip, unsigned(1)));
+
+            blockchain.setMiner(BlockMiner.getDefault());
+            CompletableFuture<Block> winner = blockchain.addBlockAsync(next(tip, unsigned(2)));
+            assertEquals(2, winner.get().getTransactions().get(0).getAmount(), "The competing block should win.");
+            assertTrue(pending.isCancelled(), "Mining on the old tip should be cancelled.");
+            assertEquals(2, blockchain.getChain().size(), "Only the winning block should be added.");
+
+            CompletableFuture<Block> stale = blockchain.addBlockAsync(next(tip, unsigned(3)));
+            ExecutionException error = assertThrows(ExecutionException.class, stale::get);
+            assertInstanceOf(StaleBlockRuntimeException.class, error.getCause(), "A stale template should fail.");
+        } finally {
+            release.countDown();
+            stalled.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a block mined by addBlock on a tip that a reorganization
+     * replaced in the meantime is rejected, even though the chain kept its
+     * height.
+     */
+    @Test
+    void testAddBlockRejectsTipReplacedWhileMining() throws Exception {
+        int bits = Difficulty.fromLeadingZeros(1);
+        ChainParams params = new ChainParams(Duration.ofSeconds(1), 2, bits, bits);
+        Blockchain blockchain = Blockchain.create(params);
+        Block genesis = blockchain.getChain().get(0);
+        long base = System.currentTimeMillis() - 60_000;
+        Block a1 = stamped(genesis, base, bits);
+        Block a2 = stamped(a1, base + 1_000, bits);
+        Block a3 = stamped(a2, base + 2_000, bits);
+        Block a4 = stamped(a3, base + 3_000, params.bitsAt(List.of(genesis, a1, a2, a3), 4));
+        for (Block block : List.of(a1, a2, a3, a4)) {
+            assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(block), "A should extend the tip.");
+        }
+
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService stalled = Executors.newSingleThreadExecutor();
+        stalled.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            blockchain.setMiner(new BlockMiner(stalled, 1));
+            CompletableFuture<Void> adding = CompletableFuture.runAsync(
+                    () -> blockchain.addBlock(next(a4, unsigned(9))));
+
+            // B's blocks came fast, so its retargeted fourth block is harder and outweighs A at the same height.
+            Block b1 = stamped(genesis, base + 500, bits);
+            Block b2 = stamped(b1, base + 500, bits);
+            Block b3 = stamped(b2, base + 500, bits);
+            Block b4 = stamped(b3, base + 500, params.bitsAt(List.of(genesis, b1, b2, b3), 4));
+            blockchain.acceptBlock(b1);
+            blockchain.acceptBlock(b2);
+            blockchain.acceptBlock(b3);
+            assertEquals(Blockchain.Acceptance.REORGANIZED, blockchain.acceptBlock(b4), "B4 should win.");
+            assertEquals(5, blockchain.getChain().size(), "The chain should keep its height.");
+            release.countDown();
+
+            ExecutionException error = assertThrows(ExecutionException.class, adding::get);
+            assertInstanceOf(StaleBlockRuntimeException.class, error.getCause(),
+                    "A block on the replaced tip should be rejected.");
+            assertEquals(b4.getHash(), blockchain.getChain().get(4).getHash(), "B4 should stay the tip.");
+            assertTrue(blockchain.validate(true), "The chain should validate in full.");
+        } finally {
+            release.countDown();
+            stalled.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a persisted chain starts from the fixed genesis block and
+     * that reopening it restores balances and indexes from the snapshot, or by
+     * replaying the blocks when the snapshot is damaged.
+     */
+    @Test
+    void testSnapshotRestoresDerivedState(@TempDir Path directory) throws Exception {
+        Wallet alice = new Wallet();
+        Transaction tx = signed(alice, "Alice", "Bob", 7);
+        try (Blockchain blockchain = Blockchain.open(directory)) {
+            Block genesis = blockchain.getChain().get(0);
+            assertEquals(ChainParams.DEFAULT_GENESIS_HASH, genesis.getHash(), "The genesis block should be fixed.");
+            blockchain.addBlock(next(genesis, tx));
+            assertTrue(blockchain.validate(false), "The chain should be valid.");
+        }
+        Path snapshot = directory.resolve(ChainSnapshot.FILE_NAME);
+        assertTrue(Files.exists(snapshot), "Closing the chain should write a snapshot.");
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try (Blockchain reopened = Blockchain.open(directory)) {
+                assertEquals(attempt == 0 ? 0 : 2, reopened.getReplayedBlockCount(),
+                        "Only a damaged snapshot should make the chain replay its blocks.");
+                assertEquals(-7, reopened.balanceOf("Alice"), "The sender's balance should be restored.");
+                assertEquals(7, reopened.balanceOf("Bob"), "The recipient's balance should be restored.");
+                assertNotNull(reopened.findTransaction(tx.getId()), "The transaction index should be restored.");
+                assertTrue(reopened.validate(false), "The restored chain should be valid.");
+            }
+            if (attempt == 0) {
+                // Claim a table of 2^30 slots for the block index, after the header and the chain work.
+                byte[] bytes = Files.readAllBytes(snapshot);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                buffer.putInt(52 + buffer.getInt(48), 1 << 30);
+                Files.write(snapshot, bytes);
+            } else {
+                Files.write(snapshot, new byte[] {1, 2, 3});
+            }
+        }
+    }
+
+    /**
+     * Tests that competing branches are kept, that the branch with the most
+     * work becomes the main branch, and that balances and indexes follow each
+     * reorganization.
+     */
+    @Test
+    void testReorganizesOntoHeaviestBranch(@TempDir Path directory) {
+        int bits = Difficulty.fromLeadingZeros(1);
+        Wallet alice = new Wallet();
+        try (Blockchain blockchain = Blockchain.open(directory,
+                new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE, bits, bits))) {
+            Block genesis = blockchain.getChain().get(0);
+            Block a1 = mined(genesis, bits, signed(alice, "Alice", "Bob", 5));
+            Block a2 = mined(a1, bits, signed(alice, "Alice", "Bob", 5));
+            assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(a1), "A1 should extend the tip.");
+            assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(a2), "A2 should extend the tip.");
+            assertEquals(Blockchain.Acceptance.DUPLICATE, blockchain.acceptBlock(a1), "A1 is already known.");
+
+            Block b1 = mined(genesis, bits, signed(alice, "Alice", "Carol", 3));
+            Block b2 = mined(b1, bits, signed(alice, "Alice", "Carol", 3));
+            Block b3 = mined(b2, bits, signed(alice, "Alice", "Carol", 3));
+            assertEquals(Blockchain.Acceptance.SIDE_BRANCH, blockchain.acceptBlock(b1), "B1 has less work.");
+            assertEquals(Blockchain.Acceptance.SIDE_BRANCH, blockchain.acceptBlock(b2), "A tie keeps the tip.");
+            assertEquals(Blockchain.Acceptance.REORGANIZED, blockchain.acceptBlock(b3), "B3 should win.");
+            assertEquals(b3.getHash(), blockchain.getChain().get(3).getHash(), "B3 should be the tip.");
+            assertEquals(0, blockchain.balanceOf("Bob"), "A-branch payments should be undone.");
+            assertEquals(9, blockchain.balanceOf("Carol"), "B-branch payments should be applied.");
+            assertNull(blockchain.findTransaction(a1.getTransactions().get(0).getId()), "A1 should leave the index.");
+            assertEquals(Difficulty.work(bits).multiply(BigInteger.valueOf(4)), blockchain.getChainWork(),
+                    "The chain work should count four blocks.");
+            assertTrue(blockchain.validate(false), "The new branch should validate.");
+
+            Block a3 = mined(a2, bits, signed(alice, "Alice", "Bob", 5));
+            Block a4 = mined(a3, bits, signed(alice, "Alice", "Bob", 5));
+            assertEquals(Blockchain.Acceptance.SIDE_BRANCH, blockchain.acceptBlock(a3), "A3 ties the tip.");
+            assertEquals(Blockchain.Acceptance.REORGANIZED, blockchain.acceptBlock(a4), "A4 should win back.");
+            assertEquals(20, blockchain.balanceOf("Bob"), "A-branch payments should be reapplied.");
+            assertEquals(0, blockchain.balanceOf("Carol"), "B-branch payments should be undone.");
+            assertTrue(blockchain.validate(true), "The chain should validate in full.");
+
+            Block orphan = mined(block(7, "ab".repeat(32)), bits, signed(alice, "Alice", "Dave", 1));
+            assertEquals(Blockchain.Acceptance.ORPHAN, blockchain.acceptBlock(orphan), "The parent is unknown.");
         }
     }
+
+    /**
+     * Tests that a heavier branch holding an overspending block is rejected,
+     * that the old main branch comes back with its balances and that the
+     * affordable part of the branch stays on a side branch.
+     */
+    @Test
+    void testReorganizationRollsBackOverspendingBranch() {
+        int bits = Difficulty.fromLeadingZeros(1);
+        Wallet alice = new Wallet();
+        Blockchain blockchain = Blockchain.create(new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE,
+                bits, bits));
+        blockchain.setRequireFunds(true);
+        Block genesis = blockchain.getChain().get(0);
+        Block a1 = mined(genesis, bits, Transaction.coinbase(1, "Alice", ChainParams.BLOCK_REWARD),
+                signed(alice, "Alice", "Bob", 20));
+        assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(a1), "A1 should extend the tip.");
+
+        Block b1 = mined(genesis, bits, Transaction.coinbase(1, "Carol", ChainParams.BLOCK_REWARD));
+        Block b2 = mined(b1, bits, signed(alice, "Alice", "Bob", 40));
+        assertEquals(Blockchain.Acceptance.SIDE_BRANCH, blockchain.acceptBlock(b1), "A tie keeps the tip.");
+        assertEquals(Blockchain.Acceptance.INVALID, blockchain.acceptBlock(b2),
+                "Alice holds nothing on the heavier branch.");
+        assertEquals(2, blockchain.getChain().size(), "The old main branch should be restored.");
+        assertEquals(a1.getHash(), blockchain.getChain().get(1).getHash(), "A1 should be the tip again.");
+        assertEquals(30, blockchain.balanceOf("Alice"), "Alice's balance should be restored.");
+        assertEquals(20, blockchain.balanceOf("Bob"), "Bob's balance should be restored.");
+        assertEquals(0, blockchain.balanceOf("Carol"), "B1's coinbase should be undone.");
+        assertNull(blockchain.findTransaction(b1.getTransactions().get(0).getId()), "B1 should leave the index.");
+        assertEquals(Difficulty.work(bits).multiply(BigInteger.TWO), blockchain.getChainWork(),
+                "The chain work should count two blocks.");
+        assertTrue(blockchain.validate(true), "The restored chain should validate in full.");
+
+        Block funded = mined(b1, bits, Transaction.coinbase(2, "Carol", ChainParams.BLOCK_REWARD));
+        assertEquals(Blockchain.Acceptance.REORGANIZED, blockchain.acceptBlock(funded),
+                "B1 should still be known, so an affordable B2 wins.");
+        assertEquals(100, blockchain.balanceOf("Carol"), "Both B-branch coinbases should be applied.");
+        assertEquals(0, blockchain.balanceOf("Alice"), "A1's coinbase should be undone.");
+    }
+
+    /**
+     * Tests that a block stamped too far ahead of the local clock, or before
+     * the median timestamp of the blocks below it, is rejected.
+     */
+    @Test
+    void testRejectsBadTimestamps() {
+        int bits = Difficulty.fromLeadingZeros(1);
+        Blockchain blockchain = Blockchain.create(new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE,
+                bits, bits));
+        Block genesis = blockchain.getChain().get(0);
+        long now = System.currentTimeMillis();
+        Block future = stamped(genesis, now + ChainParams.MAX_FUTURE_DRIFT.toMillis() + 60_000, bits);
+        assertEquals(Blockchain.Acceptance.INVALID, blockchain.acceptBlock(future), "The block is from the future.");
+        Block beforeGenesis = stamped(genesis, ChainParams.GENESIS_TIMESTAMP - 1, bits);
+        assertEquals(Blockchain.Acceptance.INVALID, blockchain.acceptBlock(beforeGenesis),
+                "The block predates its parent.");
+
+        Block b1 = stamped(genesis, now, bits);
+        Block b2 = stamped(b1, now + 1_000, bits);
+        assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(b1), "B1 is on time.");
+        assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(b2), "B2 is on time.");
+        Block early = stamped(b2, now - 1_000, bits);
+        assertEquals(Blockchain.Acceptance.INVALID, blockchain.acceptBlock(early),
+                "B3 predates the median of the three blocks below it, though not the genesis block.");
+        Block late = stamped(b2, now, bits);
+        assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(late), "The median itself is allowed.");
+    }
+
+    /**
+     * Tests that with funds required only coinbase credits can be spent, that
+     * overspending blocks are rejected and that the coinbase rules hold.
+     */
+    @Test
+    void testRequireFundsSpendsIssuedCoins() {
+        int bits = Difficulty.fromLeadingZeros(1);
+        Wallet alice = new Wallet();
+        Blockchain blockchain = Blockchain.create(new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE,
+                bits, bits));
+        blockchain.setRequireFunds(true);
+
+        Block funded = next(blockchain, Transaction.coinbase(1, "Alice", ChainParams.BLOCK_REWARD),
+                signed(alice, "Alice", "Bob", 20));
+        blockchain.addBlock(funded);
+        assertEquals(30, blockchain.balanceOf("Alice"), "Alice should keep the rest of the reward.");
+        assertEquals(20, blockchain.balanceOf("Bob"), "Bob should be paid out of the reward.");
+        assertTrue(blockchain.isAdmissible(signed(alice, "Alice", "Bob", 30)), "Alice can spend what she holds.");
+        assertFalse(blockchain.isAdmissible(signed(alice, "Alice", "Bob", 31)), "Alice cannot spend more.");
+
+        assertThrows(InsufficientFundsRuntimeException.class,
+                () -> blockchain.addBlock(next(blockchain, signed(alice, "Alice", "Bob", 31))),
+                "An overspending block should be rejected.");
+        assertThrows(IllegalArgumentException.class, () -> blockchain.addBlock(next(blockchain,
+                Transaction.coinbase(2, "Alice", ChainParams.BLOCK_REWARD + 1))),
+                "A coinbase may not issue more than the reward.");
+        assertThrows(IllegalArgumentException.class, () -> blockchain.addBlock(next(blockchain,
+                signed(alice, "Alice", "Bob", 1), Transaction.coinbase(2, "Alice", 1))),
+                "A coinbase must come first.");
+        assertThrows(IllegalArgumentException.class, () -> blockchain.addBlock(next(blockchain,
+                Transaction.coinbase(1, "Alice", 1))),
+                "A coinbase must name its block's height.");
+
+        assertEquals(2, blockchain.getChain().size(), "Only the funded block should be added.");
+        assertTrue(blockchain.validate(true), "The chain with a coinbase should validate.");
+    }
+
+    /**
+     * Tests that validating without a full revalidation checks only the blocks
+     * appended since the last validation, as {@link Blockchain#isChainValid(boolean)}
+     * does for the singleton, and still catches a bad block among them.
+     */
+    @Test
+    void testIncrementalValidationChecksOnlyNewBlocks() {
+        int bits = Difficulty.fromLeadingZeros(1);
+        Wallet alice = new Wallet();
+        Blockchain blockchain = Blockchain.create(new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE,
+                bits, bits));
+        blockchain.addBlock(next(blockchain, signed(alice, "Alice", "Bob", 1)));
+        blockchain.addBlock(next(blockchain, signed(alice, "Alice", "Bob", 2)));
+        assertTrue(blockchain.validate(false), "The first validation should check every block.");
+
+        // Damage a block that was already validated: only a full revalidation may look at it again.
+        tamper(blockchain.getChain().get(1));
+        blockchain.addBlock(next(blockchain, signed(alice, "Alice", "Bob", 3)));
+        assertTrue(blockchain.validate(false), "Only the new, valid block should be checked.");
+
+        blockchain.addBlock(next(blockchain, signed(alice, "Alice", "Bob", 4)));
+        tamper(blockchain.getChain().get(4));
+        assertFalse(blockchain.validate(false), "A bad new block should be caught.");
+        assertFalse(blockchain.validate(true), "A full revalidation should check the old blocks as well.");
+    }
+
+    /**
+     * Tests that a copy of a block repeating its last transaction, which keeps
+     * the merkle root and hash of the original, is rejected when offered and
+     * caught when found in the chain.
+     */
+    @Test
+    void testRejectsRepeatedTransactions() {
+        int bits = Difficulty.fromLeadingZeros(1);
+        Blockchain blockchain = Blockchain.create(new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE,
+                bits, bits));
+        Block genesis = blockchain.getChain().get(0);
+        Block block = mined(genesis, bits, signedTransactions(1, 2, 3).toArray(new Transaction[0]));
+        List<Transaction> repeated = new ArrayList<>(block.getTransactions());
+        repeated.add(repeated.get(2));
+        Block copy = new Block(block.getIndex(), block.getTimestamp(), repeated, block.getPreviousHash(),
+                block.getMerkleRoot(), block.getBits(), block.getNonce(), block.getHash());
+        assertEquals(block.getMerkleRoot(), copy.calculateMerkleRoot(), "The copy should keep the merkle root.");
+        assertEquals(block.getHash(), copy.calculateHash(), "The copy should keep the hash.");
+        assertEquals(Blockchain.Acceptance.INVALID, blockchain.acceptBlock(copy), "The copy should be rejected.");
+
+        assertEquals(Blockchain.Acceptance.EXTENDED, blockchain.acceptBlock(block), "The original is valid.");
+        assertTrue(blockchain.validate(false), "The chain should be valid.");
+        block.getTransactions().add(block.getTransactions().get(2));
+        assertFalse(blockchain.validate(true), "Validation should catch the repeated transaction.");
+    }
+
+    /**
+     * Tests that lookups by a short, non-hex or missing hash are misses
+     * rather than errors.
+     */
+    @Test
+    void testLookupsByMalformedHash() {
+        Blockchain blockchain = Blockchain.create(ChainParams.DEFAULT);
+        for (String hash : new String[] {"", "abc", "zz".repeat(32), "0x" + "0".repeat(62), null}) {
+            assertNull(blockchain.getBlockByHash(hash), "No block should be found for " + hash);
+            assertEquals(-1, blockchain.getHeight(hash), "No height should be found for " + hash);
+            assertNull(blockchain.findTransaction(hash), "No transaction should be found for " + hash);
+        }
+        assertEquals(0, blockchain.getHeight(ChainParams.DEFAULT_GENESIS_HASH), "A real hash should still be found.");
+    }
+
+    private static void tamper(Block block) {
+        Transaction original = block.getTransactions().get(0);
+        block.getTransactions().set(0, new Transaction(original.getSender(), original.getRecipient(),
+                original.getAmount() + 100, original.getSenderPublicKey(), original.getSignature()));
+    }
 }
@@ -0,0 +1,51 @@
+package com.youngops;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the ChainIndex class.
+ */
+class ChainIndexTest {
+
+    /**
+     * Tests block, transaction and account lookups, and that removing the tip
+     * block takes its entries out of every index.
+     */
+    @Test
+    void testLookupsAndRemoval() {
+        MemoryBlockStore store = new MemoryBlockStore();
+        ChainIndex index = new ChainIndex(store);
+        String previousHash = Block.ZERO_HASH;
+        for (int height = 0; height < 3; height++) {
+            List<Transaction> transactions = new ArrayList<>();
+            transactions.add(new Transaction("Genesis", "System", height, null));
+            transactions.add(new Transaction("Genesis", "System", height + 100, null));
+            Block block = new Block(height, transactions, previousHash);
+            block.mineBlock(1);
+            store.append(block);
+            index.add(height, block);
+            previousHash = block.getHash();
+        }
+
+        Block tip = store.get(2);
+        assertEquals(2, index.heightOf(tip.getHash()), "Block hash should map to its height.");
+        assertEquals(new TransactionLocation(1, 1),
+                index.find(store.get(1).getTransactions().get(1).calculateHash()), "Transaction should be found.");
+        assertEquals(6, index.transactionsOf("System").size(), "Recipient should see every transaction.");
+        assertEquals(new TransactionLocation(0, 0), index.transactionsOf("Genesis").get(0),
+                "Account history should be in chain order.");
+        assertTrue(index.transactionsOf("Nobody").isEmpty(), "Unknown account should have no transactions.");
+
+        index.removeTip(2, tip);
+        store.truncate(2);
+        assertEquals(-1, index.heightOf(tip.getHash()), "Removed block should not be found.");
+        assertNull(index.find(tip.getTransactions().get(0).calculateHash()), "Removed transaction should be gone.");
+        assertEquals(4, index.transactionsOf("Genesis").size(), "Account history should shrink.");
+    }
+}
@@ -0,0 +1,66 @@
+package com.youngops;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the ChainMetrics and LatencyHistogram classes.
+ */
+class ChainMetricsTest {
+
+    /**
+     * Tests that histogram percentiles stay within the bucket precision.
+     */
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount(), "Every value should be counted.");
+        assertEquals(500.5, snapshot.getMeanMicros(), 0.01, "The mean should be exact.");
+        assertEquals(500, snapshot.getP50Micros(), 500 * 0.04, "The median should be within bucket precision.");
+        assertEquals(990, snapshot.getP99Micros(), 990 * 0.04, "The 99th percentile should be within precision.");
+        assertEquals(1000, snapshot.getMaxMicros(), 0.001, "The maximum should be exact.");
+
+        for (long value : new long[] {0, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            long midpoint = LatencyHistogram.midpointOf(LatencyHistogram.bucketOf(value));
+            assertTrue(Math.abs((double) midpoint - value) <= Math.max(1, value / 32.0),
+                    "Bucket of " + value + " should contain it.");
+        }
+    }
+
+    /**
+     * Tests that mining and verification show up in the shared metrics and
+     * over JMX.
+     */
+    @Test
+    void testSharedMetricsOverJmx() throws Exception {
+        ChainMetrics metrics = ChainMetrics.getDefault();
+        long hashes = metrics.getHashesTried();
+        long verified = metrics.getSignaturesVerified();
+
+        Wallet wallet = new Wallet();
+        Transaction transaction = new Transaction("alice", "bob", 5, wallet.getPublicKey());
+        transaction.signTransaction(wallet.getPrivateKey());
+        assertTrue(transaction.verifySignature(), "The signature should verify.");
+        new Block(1, List.of(transaction), Block.ZERO_HASH).mineBlock(2);
+
+        assertTrue(metrics.getHashesTried() > hashes, "Mining should count hashes.");
+        assertTrue(metrics.getSignaturesVerified() > verified, "Verification should be counted.");
+
+        ChainMetricsMXBean proxy = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(ChainMetrics.OBJECT_NAME), ChainMetricsMXBean.class);
+        assertEquals(metrics.getBlocksMined(), proxy.getBlocksMined(), "JMX should expose the shared metrics.");
+        assertTrue(proxy.getVerifyLatency().getCount() > 0, "Latency snapshots should survive the JMX mapping.");
+        assertTrue(proxy.dump().contains("hashes tried"), "The dump should list the hash counter.");
+    }
+}
@@ -0,0 +1,35 @@
+package com.youngops;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the CryptoEngines class.
+ */
+class CryptoEnginesTest {
+
+    /**
+     * Tests that each thread reuses its engines and that they still produce
+     * correct results.
+     */
+    @Test
+    void testEnginesAreReusedPerThread() {
+        assertSame(CryptoEngines.sha256(), CryptoEngines.sha256(), "The digest should be reused.");
+        assertSame(CryptoEngines.signature(), CryptoEngines.signature(), "The signature engine should be reused.");
+        assertSame(CryptoEngines.keyFactory(), CryptoEngines.keyFactory(), "The key factory should be reused.");
+
+        CryptoEngines.sha256().update(new byte[] {1, 2, 3});
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                StringUtil.applySha256("abc"), "Leftover input should not leak into the next hash.");
+
+        Wallet wallet = new Wallet();
+        String signature = StringUtil.signData("payload", wallet.getPrivateKey());
+        assertTrue(StringUtil.verifySignature("payload", signature, wallet.getPublicKey()),
+                "A signature should verify with the reused engine.");
+        assertFalse(StringUtil.verifySignature("tampered", signature, wallet.getPublicKey()),
+                "A signature over other data should not verify.");
+    }
+}
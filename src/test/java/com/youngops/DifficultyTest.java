@@ -0,0 +1,85 @@
+package com.youngops;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the Difficulty and ChainParams classes.
+ */
+class DifficultyTest {
+
+    /**
+     * Tests the compact encoding against known values and hashes.
+     */
+    @Test
+    void testCompactTargets() {
+        assertEquals(0x1d00ffff, Difficulty.toBits(Difficulty.toTarget(0x1d00ffff)), "Round trip should hold.");
+        assertEquals(BigInteger.valueOf(0xffff).shiftLeft(8 * 26), Difficulty.toTarget(0x1d00ffff),
+                "Mantissa should be scaled by the exponent.");
+        assertEquals(BigInteger.valueOf(0x1234), Difficulty.toTarget(Difficulty.toBits(BigInteger.valueOf(0x1234))),
+                "Small targets should survive encoding.");
+
+        int fourDigits = Difficulty.fromLeadingZeros(4);
+        byte[] easy = StringUtil.fromHex("0000ffff" + "0".repeat(56));
+        byte[] hard = StringUtil.fromHex("00010000" + "0".repeat(56));
+        assertTrue(Difficulty.meetsTarget(easy, fourDigits), "A hash within the target should pass.");
+        assertFalse(Difficulty.meetsTarget(hard, fourDigits), "A hash above the target should fail.");
+    }
+
+    /**
+     * Tests that retargeting scales the target with the block time and clamps
+     * extreme adjustments.
+     */
+    @Test
+    void testRetarget() {
+        int bits = Difficulty.fromLeadingZeros(4);
+        int limit = Difficulty.fromLeadingZeros(1);
+        BigInteger target = Difficulty.toTarget(bits);
+        assertEquals(target.divide(BigInteger.TWO), Difficulty.toTarget(Difficulty.retarget(bits, 500, 1000, limit)),
+                "Blocks twice as fast should halve the target.");
+        assertEquals(target.multiply(BigInteger.valueOf(4)),
+                Difficulty.toTarget(Difficulty.retarget(bits, 1_000_000, 1000, limit)),
+                "Slow blocks should be clamped to a fourfold easier target.");
+        assertEquals(limit, Difficulty.retarget(limit, 4000, 1000, limit), "The target should not pass the limit.");
+    }
+
+    /**
+     * Tests that the chain parameters keep the parent's target between
+     * retargets and adjust it at retarget heights.
+     */
+    @Test
+    void testBitsAtFollowsBlockTimes() {
+        int initial = Difficulty.fromLeadingZeros(3);
+        ChainParams params = new ChainParams(Duration.ofSeconds(10), 4, initial, Difficulty.fromLeadingZeros(1));
+        List<Block> chain = new ArrayList<>();
+        for (int height = 0; height < 4; height++) {
+            // Blocks one second apart, ten times faster than intended.
+            chain.add(new Block(height, 1_000L * height, new ArrayList<>(), Block.ZERO_HASH, Block.ZERO_HASH,
+                    params.bitsAt(chain, height), 0, Block.ZERO_HASH));
+        }
+        assertEquals(initial, chain.get(3).getBits(), "Targets should not change between retargets.");
+        assertEquals(Difficulty.toBits(Difficulty.toTarget(initial).divide(BigInteger.valueOf(4))),
+                params.bitsAt(chain, 4), "Fast blocks should make the next ones four times harder.");
+    }
+
+    /**
+     * Tests that the default genesis block is fixed and that its precomputed
+     * nonce is the one a search from zero finds.
+     */
+    @Test
+    void testGenesisIsDeterministic() {
+        Block genesis = ChainParams.DEFAULT.getGenesisBlock();
+        Block searched = Block.createGenesis(ChainParams.GENESIS_TIMESTAMP, ChainParams.DEFAULT.getInitialBits(), 0);
+        assertEquals(ChainParams.DEFAULT_GENESIS_HASH, genesis.getHash(), "The genesis hash should be fixed.");
+        assertEquals(searched.getNonce(), genesis.getNonce(), "The precomputed nonce should be the first valid one.");
+        assertTrue(genesis.hasValidProofOfWork(), "The genesis block should meet its target.");
+        assertEquals(genesis.getHash(), genesis.calculateHash(), "The genesis hash should match its header.");
+    }
+}
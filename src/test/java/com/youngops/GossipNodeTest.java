@@ -0,0 +1,139 @@
+package com.youngops;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static com.youngops.TestBlocks.mined;
+import static com.youngops.TestBlocks.signed;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the GossipNode class.
+ */
+class GossipNodeTest {
+
+    private static final int BITS = Difficulty.fromLeadingZeros(1);
+    private static final ChainParams PARAMS = new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE, BITS, BITS);
+
+    /**
+     * Tests that a transaction and then the block holding it travel across
+     * two hops, that the block clears the transaction from every mempool, and
+     * that a transaction its sender cannot afford is turned away.
+     */
+    @Test
+    void testGossipsTransactionsAndBlocks() {
+        try (GossipNode a = new GossipNode("a", PARAMS);
+                GossipNode b = new GossipNode("b", PARAMS);
+                GossipNode c = new GossipNode("c", PARAMS)) {
+            a.connect(b.getAddress());
+            b.connect(c.getAddress());
+
+            Block funding = c.mineBlock(1, Integer.MAX_VALUE, "Alice");
+            await(() -> tipOf(a).equals(funding.getHash()));
+
+            Wallet wallet = new Wallet();
+            assertEquals(Mempool.Admission.REJECTED, a.submitTransaction(signed(wallet, "Bob", "Carol", 1)),
+                    "An unfunded sender should be turned away.");
+            Transaction tx = signed(wallet, "Alice", "Bob", 5);
+            assertEquals(Mempool.Admission.ACCEPTED, a.submitTransaction(tx), "The first node should admit it.");
+            await(() -> c.getMempool().contains(tx.getId()));
+            assertEquals(Mempool.Admission.DUPLICATE, b.submitTransaction(tx), "A seen transaction is a duplicate.");
+
+            Block block = c.mineBlock(10, Integer.MAX_VALUE);
+            assertEquals(List.of(Transaction.coinbase(2, "c", ChainParams.BLOCK_REWARD).getId(), tx.getId()),
+                    block.getTransactions().stream().map(Transaction::getId).toList(),
+                    "The block should hold the miner's coinbase and the gossiped transaction.");
+            await(() -> tipOf(a).equals(block.getHash()));
+            await(() -> !a.getMempool().contains(tx.getId()));
+            assertEquals(block.getHash(), tipOf(b), "The middle node should have the block.");
+            assertEquals(2, a.getBlocksReceived(), "The first node should receive each block once.");
+        }
+    }
+
+    /**
+     * Tests that a block arriving before its parent is held until the parent
+     * comes, and that a peer sending a malformed frame is dropped.
+     */
+    @Test
+    void testOrphansAndMalformedFrames() throws IOException {
+        try (GossipNode node = new GossipNode("node", PARAMS);
+                SocketChannel peer = SocketChannel.open(node.getAddress())) {
+            await(() -> node.getPeerCount() == 1);
+            Block genesis = PARAMS.getGenesisBlock();
+            Block parent = mined(genesis, BITS);
+            Block child = mined(parent, BITS);
+
+            Block sibling = mined(parent, BITS, Transaction.coinbase(2, "Alice", 1));
+
+            send(peer, GossipNode.BLOCK, BlockCodec.encode(child));
+            send(peer, GossipNode.BLOCK, BlockCodec.encode(sibling));
+            await(() -> node.getOrphansReceived() == 2);
+            send(peer, GossipNode.BLOCK, BlockCodec.encode(parent));
+            await(() -> tipOf(node).equals(child.getHash()) || tipOf(node).equals(sibling.getHash()));
+            assertEquals(3, node.getBlockchain().getChain().size(), "The parent and one child should be on the chain.");
+            assertEquals(Blockchain.Acceptance.DUPLICATE, node.getBlockchain().acceptBlock(child),
+                    "Both orphan siblings should have been offered once the parent arrived.");
+            assertEquals(Blockchain.Acceptance.DUPLICATE, node.getBlockchain().acceptBlock(sibling),
+                    "Both orphan siblings should have been offered once the parent arrived.");
+
+            peer.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, -1));
+            await(() -> node.getPeerCount() == 0);
+            assertFalse(node.getBlockchain().getChain().isEmpty(), "The chain should be untouched.");
+        }
+    }
+
+    /**
+     * Tests that a frame whose body fails to decode or to process drops only
+     * the peer that sent it and leaves the node serving the others.
+     */
+    @Test
+    void testMalformedFrameBodies() throws IOException {
+        try (GossipNode node = new GossipNode("node", PARAMS);
+                SocketChannel good = SocketChannel.open(node.getAddress());
+                SocketChannel negative = SocketChannel.open(node.getAddress());
+                SocketChannel unknown = SocketChannel.open(node.getAddress())) {
+            await(() -> node.getPeerCount() == 3);
+
+            // A sender length that decodes to a negative varint.
+            send(negative, GossipNode.TRANSACTION, new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                    (byte) 0xff, 0x0f, 0, 0, 0, 0 });
+            await(() -> node.getPeerCount() == 2);
+
+            // A message type the node does not know, which fails while processing the frame.
+            send(unknown, (byte) 0x7f, new byte[] {0});
+            await(() -> node.getPeerCount() == 1);
+
+            send(good, GossipNode.BLOCK, BlockCodec.encode(mined(PARAMS.getGenesisBlock(), BITS)));
+            await(() -> node.getBlockchain().getChain().size() == 2);
+            assertEquals(1, node.getPeerCount(), "The well-behaved peer should stay connected.");
+        }
+    }
+
+    private static void send(SocketChannel channel, byte type, byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + 1 + payload.length);
+        frame.putInt(payload.length + 1).put(type).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private static String tipOf(GossipNode node) {
+        List<Block> chain = node.getBlockchain().getChain();
+        return chain.get(chain.size() - 1).getHash();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the network.");
+            Thread.onSpinWait();
+        }
+    }
+}
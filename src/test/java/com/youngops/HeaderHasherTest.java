@@ -0,0 +1,51 @@
+package com.youngops;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the HeaderHasher class.
+ */
+class HeaderHasherTest {
+
+    /**
+     * Tests that hashing from the cached midstate gives the same digest as
+     * hashing the whole header with MessageDigest.
+     */
+    @Test
+    void testMidstateDigestMatchesMessageDigest() throws Exception {
+        Random random = new Random(42);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        for (int round = 0; round < 50; round++) {
+            byte[] prefix = new byte[Block.HEADER_PREFIX_LENGTH];
+            random.nextBytes(prefix);
+            long nonce = random.nextLong();
+            HeaderHasher hasher = new HeaderHasher(prefix);
+            sha256.update(prefix);
+            byte[] expected = sha256.digest(ByteBuffer.allocate(Long.BYTES).putLong(nonce).array());
+            assertArrayEquals(expected, hasher.digest(nonce), "Midstate digest should match SHA-256.");
+        }
+    }
+
+    /**
+     * Tests that a mined block's hash matches the hash computed by the midstate
+     * hasher for the winning nonce.
+     */
+    @Test
+    void testMinedBlockHashMatchesHasher() {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction("Genesis", "System", 0, null));
+        Block block = new Block(1, transactions, Block.ZERO_HASH);
+        block.mineBlock(2);
+        HeaderHasher hasher = new HeaderHasher(block.getHeaderPrefix());
+        assertEquals(block.getHash(), StringUtil.toHex(hasher.digest(block.getNonce())),
+                "Block hash should match the midstate hash.");
+    }
+}
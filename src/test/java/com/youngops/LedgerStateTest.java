@@ -0,0 +1,71 @@
+package com.youngops;
+
+
+import static com.youngops.TestBlocks.block;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.youngops.exception.InsufficientFundsRuntimeException;
+
+/**
+ * Test class for the LedgerState class.
+ */
+class LedgerStateTest {
+
+    /**
+     * Tests that applying and undoing a block moves balances forward and back.
+     */
+    @Test
+    void testApplyAndUndo() {
+        Wallet wallet = new Wallet();
+        LedgerState ledger = new LedgerState();
+        Block block = block(1, Block.ZERO_HASH, Transaction.coinbase(1, "Alice", 50),
+                new Transaction("Alice", "Bob", 30, wallet.getPublicKey()),
+                new Transaction("Bob", "Carol", 10, wallet.getPublicKey()));
+        ledger.checkBlock(block);
+        ledger.apply(block);
+        assertEquals(20, ledger.balanceOf("Alice"), "Sender should be debited after the coinbase credit.");
+        assertEquals(20, ledger.balanceOf("Bob"), "Bob should net his credit and debit.");
+        assertEquals(10, ledger.balanceOf("Carol"), "Recipient should be credited.");
+        assertEquals(0, ledger.balanceOf(Transaction.COINBASE_PREFIX + 1), "A coinbase debits no account.");
+
+        ledger.undo(block);
+        assertEquals(0, ledger.balanceOf("Alice"), "Undo should restore the sender.");
+        assertEquals(0, ledger.balanceOf("Carol"), "Undo should restore the recipient.");
+    }
+
+    /**
+     * Tests that overspending transactions are rejected, counting funds
+     * received earlier in the same block.
+     */
+    @Test
+    void testAdmissionChecks() {
+        Wallet wallet = new Wallet();
+        LedgerState ledger = new LedgerState();
+        assertThrows(InsufficientFundsRuntimeException.class,
+                () -> ledger.checkBlock(block(1, Block.ZERO_HASH,
+                        new Transaction("Alice", "Bob", -50, wallet.getPublicKey()))),
+                "A negative amount must not move funds.");
+        ledger.apply(block(1, Block.ZERO_HASH, Transaction.coinbase(1, "Alice", 50)));
+        assertEquals(50, ledger.balanceOf("Alice"), "Alice should hold 50.");
+        assertFalse(ledger.isAdmissible(Transaction.coinbase(2, "Alice", 1)),
+                "A coinbase is not admissible outside a block.");
+
+        assertTrue(ledger.isAdmissible(new Transaction("Alice", "Bob", 50, wallet.getPublicKey())),
+                "Spending the full balance should be allowed.");
+        assertFalse(ledger.isAdmissible(new Transaction("Alice", "Bob", 51, wallet.getPublicKey())),
+                "Overspending should be rejected.");
+        assertFalse(ledger.isAdmissible(new Transaction("Alice", "Bob", 30, wallet.getPublicKey()), 25),
+                "Pending spends should count against the balance.");
+
+        ledger.checkBlock(block(1, Block.ZERO_HASH, new Transaction("Alice", "Carol", 40, wallet.getPublicKey()),
+                new Transaction("Carol", "Dave", 40, wallet.getPublicKey())));
+        assertThrows(InsufficientFundsRuntimeException.class,
+                () -> ledger.checkBlock(block(1, Block.ZERO_HASH,
+                        new Transaction("Carol", "Dave", 1, wallet.getPublicKey()))),
+                "Carol has no funds before the block.");
+    }
+}
@@ -0,0 +1,172 @@
+package com.youngops;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.youngops.TestBlocks.EASY_BITS;
+import static com.youngops.TestBlocks.block;
+import static com.youngops.TestBlocks.mine;
+import static com.youngops.TestBlocks.unsigned;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the MappedBlockStore class.
+ */
+class MappedBlockStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that blocks appended to the store survive reopening it, across
+     * several segments, and still hash to their stored hash.
+     */
+    @Test
+    void testBlocksSurviveReopen() {
+        List<String> hashes = new ArrayList<>();
+        try (MappedBlockStore store = new MappedBlockStore(directory, 4096)) {
+            String previousHash = Block.ZERO_HASH;
+            for (int i = 0; i < 20; i++) {
+                Block block = mine(block(i, previousHash, unsigned(i)), EASY_BITS);
+                store.append(block);
+                hashes.add(block.getHash());
+                previousHash = block.getHash();
+            }
+        }
+
+        try (MappedBlockStore store = new MappedBlockStore(directory, 4096)) {
+            assertEquals(hashes.size(), store.size(), "All blocks should be loaded.");
+            for (int i = 0; i < hashes.size(); i++) {
+                Block block = store.get(i);
+                assertEquals(hashes.get(i), block.getHash(), "Block " + i + " should keep its hash.");
+                assertEquals(block.getHash(), block.calculateHash(), "Block " + i + " should still hash the same.");
+                assertEquals(hashes.get(i), store.getHash(i), "Record header should hold the hash of block " + i + ".");
+            }
+        }
+    }
+
+    /**
+     * Tests that truncated blocks are gone after reopening and that new blocks
+     * can be appended in their place.
+     */
+    @Test
+    void testTruncateThenAppend() {
+        try (MappedBlockStore store = new MappedBlockStore(directory, 4096)) {
+            String previousHash = Block.ZERO_HASH;
+            for (int i = 0; i < 10; i++) {
+                Block block = mine(block(i, previousHash, unsigned(i)), EASY_BITS);
+                store.append(block);
+                previousHash = block.getHash();
+            }
+            store.truncate(5);
+            assertEquals(5, store.size(), "Truncated blocks should be gone.");
+            store.append(mine(block(5, store.get(4).getHash(), unsigned(5)), EASY_BITS));
+        }
+
+        try (MappedBlockStore store = new MappedBlockStore(directory, 4096)) {
+            assertEquals(6, store.size(), "Only kept and newly appended blocks should load.");
+            assertTrue(store.get(5).getPreviousHash().equals(store.get(4).getHash()), "Tip should link.");
+        }
+    }
+
+    /**
+     * Tests that a clean close lets the next open skip the checksums of the
+     * records it covers, that records appended after it are still checked,
+     * and that a corrupt record length is caught rather than overflowing.
+     */
+    @Test
+    void testChecksumsCheckedPastCleanClose() throws IOException {
+        int segmentSize = 1 << 16;
+        try (MappedBlockStore store = new MappedBlockStore(directory, segmentSize)) {
+            appendBlocks(store, 10);
+        }
+        int checksum = readInt(3, Integer.BYTES);
+        writeInt(3, Integer.BYTES, checksum ^ 1);
+        MappedBlockStore crashed = new MappedBlockStore(directory, segmentSize);
+        assertEquals(10, crashed.size(), "Records covered by the clean close should not be checked again.");
+        writeInt(3, Integer.BYTES, checksum);
+        // Left open, as after a crash: the next open has no mark and checks every record.
+        appendBlocks(crashed, 5);
+        writeInt(12, Integer.BYTES, readInt(12, Integer.BYTES) ^ 1);
+
+        try (MappedBlockStore store = new MappedBlockStore(directory, segmentSize)) {
+            assertEquals(12, store.size(), "A damaged record after the mark should end the chain.");
+        }
+        writeInt(11, 0, Integer.MAX_VALUE - 16);
+        try (MappedBlockStore store = new MappedBlockStore(directory, segmentSize)) {
+            assertEquals(11, store.size(), "A record length past the segment end should end the chain.");
+        }
+    }
+
+    /**
+     * Tests that a snapshot keeps its blocks while later truncations cut them
+     * off and overwrite their records, across several truncations.
+     */
+    @Test
+    void testSnapshotSurvivesTruncation() {
+        try (MappedBlockStore store = new MappedBlockStore(directory, 4096)) {
+            appendBlocks(store, 8);
+            List<Block> first = store.snapshot();
+            List<String> firstHashes = first.stream().map(Block::getHash).toList();
+
+            store.truncate(5);
+            for (int i = 5; i < 10; i++) {
+                store.append(mine(block(i, store.getHash(i - 1), unsigned(100 + i)), EASY_BITS));
+            }
+            List<Block> second = store.snapshot();
+            List<String> secondHashes = second.stream().map(Block::getHash).toList();
+
+            store.truncate(2);
+            appendBlocks(store, 1);
+
+            assertEquals(firstHashes, first.stream().map(Block::getHash).toList(),
+                    "The first snapshot should keep the blocks it was taken with.");
+            assertEquals(secondHashes, second.stream().map(Block::getHash).toList(),
+                    "The second snapshot should keep the blocks it was taken with.");
+            assertEquals(firstHashes.subList(0, 5), secondHashes.subList(0, 5),
+                    "Both snapshots should share the blocks below the first cut.");
+            assertEquals(3, store.snapshot().size(), "A new snapshot should see the store as it is now.");
+        }
+    }
+
+    private static void appendBlocks(MappedBlockStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            int height = store.size();
+            String previousHash = height == 0 ? Block.ZERO_HASH : store.getHash(height - 1);
+            store.append(mine(block(height, previousHash, unsigned(height)), EASY_BITS));
+        }
+    }
+
+    private int readInt(int record, int field) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-000000.blk"))) {
+            ByteBuffer value = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(value, recordOffset(channel, record) + field);
+            return value.getInt(0);
+        }
+    }
+
+    private void writeInt(int record, int field, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-000000.blk"), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, value), recordOffset(channel, record) + field);
+        }
+    }
+
+    private static long recordOffset(FileChannel channel, int record) throws IOException {
+        long offset = 0;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (int i = 0; i < record; i++) {
+            channel.read(length.clear(), offset);
+            offset += 2 * Integer.BYTES + 32 + length.getInt(0);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,44 @@
+package com.youngops;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.youngops.TestBlocks.block;
+import static com.youngops.TestBlocks.unsigned;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the MemoryBlockStore class.
+ */
+class MemoryBlockStoreTest {
+
+    /**
+     * Tests that a snapshot keeps its blocks across appends and truncations,
+     * including across segment boundaries.
+     */
+    @Test
+    void testSnapshotsAreImmutable() {
+        MemoryBlockStore store = new MemoryBlockStore();
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            Block block = block(i, Block.ZERO_HASH, unsigned(i));
+            blocks.add(block);
+            store.append(block);
+        }
+        List<Block> before = store.snapshot();
+
+        store.truncate(1200);
+        Block replacement = block(1200, Block.ZERO_HASH, unsigned(1200));
+        store.append(replacement);
+        store.append(block(1201, Block.ZERO_HASH, unsigned(1201)));
+
+        assertEquals(1500, before.size(), "Snapshot size should not change.");
+        assertSame(blocks.get(1200), before.get(1200), "Snapshot should keep the truncated block.");
+        assertSame(blocks.get(1499), before.get(1499), "Snapshot should keep its last block.");
+        assertEquals(1202, store.size(), "Store should hold the new tip.");
+        assertSame(replacement, store.get(1200), "Store should return the replacement.");
+        assertSame(blocks.get(1023), store.get(1023), "Blocks below the cut should be kept.");
+    }
+}
@@ -0,0 +1,140 @@
+package com.youngops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.youngops.TestBlocks.signed;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the Mempool class.
+ */
+class MempoolTest {
+
+    /**
+     * Tests that unsigned, forged and duplicate transactions are turned away.
+     */
+    @Test
+    void testAdmission() {
+        Wallet signer = new Wallet();
+        Wallet attacker = new Wallet();
+        Mempool mempool = new Mempool(10, tx -> tx.getAmount() < 100);
+
+        Transaction valid = signed(signer, "Alice", "Bob", 1);
+        assertEquals(Mempool.Admission.ACCEPTED, mempool.submit(valid), "A signed transaction should be admitted.");
+        assertEquals(Mempool.Admission.DUPLICATE, mempool.submit(valid), "A resubmission should be a duplicate.");
+        assertTrue(mempool.contains(valid.calculateHash()), "The pool should hold the transaction.");
+
+        Transaction forged = new Transaction("Alice", "Bob", 2, signer.getPublicKey());
+        forged.signTransaction(attacker.getPrivateKey());
+        assertEquals(Mempool.Admission.INVALID_SIGNATURE, mempool.submit(forged),
+                "A forged signature should be rejected.");
+        assertEquals(Mempool.Admission.INVALID_SIGNATURE,
+                mempool.submit(new Transaction("Alice", "Bob", 3, signer.getPublicKey())),
+                "An unsigned transaction should be rejected.");
+        assertEquals(Mempool.Admission.REJECTED, mempool.submit(signed(signer, "Alice", "Bob", 500)),
+                "The admission policy should be applied.");
+        assertEquals(1, mempool.size(), "Only the valid transaction should be pending.");
+    }
+
+    /**
+     * Tests that a full pool still reports a resubmitted transaction as a
+     * duplicate and turns away only new ones.
+     */
+    @Test
+    void testFullPool() {
+        Wallet signer = new Wallet();
+        Mempool mempool = new Mempool(1, tx -> true);
+        Transaction first = signed(signer, "Alice", "Bob", 1);
+        Transaction second = signed(signer, "Alice", "Bob", 2);
+        assertEquals(Mempool.Admission.ACCEPTED, mempool.submit(first), "The first transaction should fit.");
+        assertEquals(Mempool.Admission.DUPLICATE, mempool.submit(first), "A resubmission should be a duplicate.");
+        assertEquals(Mempool.Admission.FULL, mempool.submit(second), "A new transaction should not fit.");
+        assertFalse(mempool.contains(second.calculateHash()), "The turned away transaction should not be pending.");
+        assertEquals(1, mempool.size(), "Only the first transaction should be pending.");
+    }
+
+    /**
+     * Tests that a removed transaction is skipped by the next batch.
+     */
+    @Test
+    void testRemove() {
+        Wallet signer = new Wallet();
+        Mempool mempool = new Mempool();
+        Transaction first = signed(signer, "Alice", "Bob", 1);
+        Transaction second = signed(signer, "Alice", "Bob", 2);
+        mempool.submit(first);
+        mempool.submit(second);
+
+        assertTrue(mempool.remove(first.getId()), "A pending transaction should be removed.");
+        assertFalse(mempool.remove(first.getId()), "It is no longer pending.");
+        assertEquals(1, mempool.size(), "Only the second transaction should be pending.");
+        assertEquals(List.of(second), mempool.nextBatch(10, Integer.MAX_VALUE), "The batch should skip it.");
+        assertEquals(0, mempool.size(), "The pool should be empty.");
+    }
+
+    /**
+     * Tests that batches respect the count and byte limits and keep arrival
+     * order.
+     */
+    @Test
+    void testBatchLimits() {
+        Wallet signer = new Wallet();
+        Mempool mempool = new Mempool();
+        List<Transaction> submitted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Transaction tx = signed(signer, "Alice", "Bob", i);
+            submitted.add(tx);
+            mempool.submit(tx);
+        }
+        int size = BlockCodec.encode(submitted.get(0)).length;
+
+        assertEquals(submitted.subList(0, 4), mempool.nextBatch(4, Integer.MAX_VALUE), "Count limit should apply.");
+        assertEquals(submitted.subList(4, 7), mempool.nextBatch(100, size * 3 + 1), "Byte limit should apply.");
+        assertEquals(submitted.subList(7, 8), mempool.nextBatch(100, 1),
+                "An oversized transaction should come alone.");
+        assertEquals(submitted.subList(8, 10), mempool.nextBatch(100, Integer.MAX_VALUE),
+                "The rest should follow in order.");
+        assertTrue(mempool.nextBatch(100, Integer.MAX_VALUE).isEmpty(), "The pool should be drained.");
+    }
+
+    /**
+     * Tests that many threads can submit concurrently without losing or
+     * duplicating transactions.
+     */
+    @Test
+    void testConcurrentSubmission() throws Exception {
+        Wallet signer = new Wallet();
+        Mempool mempool = new Mempool();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            transactions.add(signed(signer, "Alice", "Bob", i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> transactions.forEach(mempool::submit)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200, mempool.size(), "Each transaction should be pending exactly once.");
+        List<Transaction> drained = new ArrayList<>();
+        List<Transaction> batch;
+        while (!(batch = mempool.nextBatch(64, Integer.MAX_VALUE)).isEmpty()) {
+            drained.addAll(batch);
+        }
+        assertEquals(200, drained.size(), "Every transaction should be handed out once.");
+        assertFalse(mempool.contains(transactions.get(0).calculateHash()), "Taken transactions should leave the pool.");
+    }
+}
@@ -0,0 +1,90 @@
+package com.youngops;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the MerkleTree class.
+ */
+class MerkleTreeTest {
+
+    /**
+     * Tests the root of small trees against roots computed by hand, including
+     * the duplication of the last node on odd levels.
+     */
+    @Test
+    void testRootOfSmallTrees() throws Exception {
+        byte[][] leaves = randomLeaves(3, 1);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        byte[] left = hashPair(sha256, leaves[0], leaves[1]);
+        byte[] right = hashPair(sha256, leaves[2], leaves[2]);
+        byte[] expected = hashPair(sha256, left, right);
+
+        assertArrayEquals(expected, new MerkleTree(flatten(leaves), 3).getRoot(), "Root of three leaves.");
+        assertArrayEquals(leaves[0], new MerkleTree(flatten(leaves), 1).getRoot(),
+                "Single leaf should be the root.");
+        assertArrayEquals(new byte[MerkleTree.HASH_LENGTH], new MerkleTree(new byte[0], 0).getRoot(),
+                "Empty tree should have a zero root.");
+    }
+
+    /**
+     * Tests that a tree large enough to be hashed in parallel keeps every level
+     * and ends in a single root.
+     */
+    @Test
+    void testLargeTreeRetainsLevels() {
+        int leafCount = MerkleTree.PARALLEL_THRESHOLD * 4 + 3;
+        MerkleTree tree = new MerkleTree(flatten(randomLeaves(leafCount, 2)), leafCount);
+        assertEquals(leafCount, tree.getLeafCount(), "Leaf count should be kept.");
+        assertEquals(1, tree.getLevelSize(tree.getLevelCount() - 1), "Top level should be the root.");
+        assertArrayEquals(tree.getNode(tree.getLevelCount() - 1, 0), tree.getRoot(), "Root node.");
+    }
+
+    /**
+     * Tests that the proof of every leaf verifies against the root and that a
+     * proof fails for a different leaf or root.
+     */
+    @Test
+    void testInclusionProofs() {
+        int leafCount = 13;
+        byte[][] leaves = randomLeaves(leafCount, 3);
+        MerkleTree tree = new MerkleTree(flatten(leaves), leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            MerkleProof proof = tree.getProof(i);
+            assertEquals(tree.getLevelCount() - 1, proof.size(), "Proof length should be the tree height.");
+            assertTrue(MerkleTree.verifyProof(leaves[i], proof, tree.getRoot()), "Proof should verify.");
+            assertFalse(MerkleTree.verifyProof(leaves[(i + 1) % leafCount], proof, tree.getRoot()),
+                    "Proof should not verify another leaf.");
+        }
+        assertFalse(MerkleTree.verifyProof(leaves[0], tree.getProof(0), new byte[MerkleTree.HASH_LENGTH]),
+                "Proof should not verify against another root.");
+    }
+
+    private static byte[] hashPair(MessageDigest sha256, byte[] left, byte[] right) {
+        sha256.update(left);
+        return sha256.digest(right);
+    }
+
+    private static byte[][] randomLeaves(int count, long seed) {
+        Random random = new Random(seed);
+        byte[][] leaves = new byte[count][MerkleTree.HASH_LENGTH];
+        for (byte[] leaf : leaves) {
+            random.nextBytes(leaf);
+        }
+        return leaves;
+    }
+
+    private static byte[] flatten(byte[][] leaves) {
+        byte[] flat = new byte[leaves.length * MerkleTree.HASH_LENGTH];
+        for (int i = 0; i < leaves.length; i++) {
+            System.arraycopy(leaves[i], 0, flat, i * MerkleTree.HASH_LENGTH, MerkleTree.HASH_LENGTH);
+        }
+        return flat;
+    }
+}
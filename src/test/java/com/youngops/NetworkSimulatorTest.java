@@ -0,0 +1,42 @@
+package com.youngops;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the NetworkSimulator class.
+ */
+class NetworkSimulatorTest {
+
+    /**
+     * Tests that a small network mines, agrees on one tip and reports what it
+     * measured.
+     */
+    @Test
+    void testNetworkConverges() {
+        int bits = Difficulty.fromLeadingZeros(1);
+        ChainParams params = new ChainParams(Duration.ofSeconds(1), Integer.MAX_VALUE, bits, bits);
+        try (NetworkSimulator simulator = new NetworkSimulator(4, 1, params, 7)) {
+            NetworkSimulator.Report report = simulator.run(5, 8, Duration.ofSeconds(20));
+
+            assertTrue(report.isConverged(), "The nodes should agree on a tip.");
+            assertTrue(report.getBlocksConfirmed() >= 1, "Some blocks should be confirmed.");
+            assertTrue(report.getBlocksConfirmed() <= report.getBlocksMined(), "No more than the mined blocks.");
+            assertTrue(report.getThroughput() > 0, "Transactions should be confirmed.");
+            assertTrue(report.getPropagation().getCount() > 0, "Propagation should be measured.");
+            NetworkSimulator.Report second = simulator.run(2, 4, Duration.ofSeconds(20));
+            assertTrue(second.isConverged(), "The nodes should agree again.");
+            assertTrue(second.getPropagation().getCount() <= (long) second.getBlocksMined() * 3,
+                    "A report should only measure the blocks of its own run.");
+            List<Block> chain = simulator.getNodes().get(0).getBlockchain().getChain();
+            for (GossipNode node : simulator.getNodes()) {
+                assertEquals(chain.size(), node.getBlockchain().getChain().size(), "Every node has the same height.");
+                assertTrue(node.getBlockchain().validate(true), "Every node's chain should validate.");
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.youngops;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the PublicKeyCache class.
+ */
+class PublicKeyCacheTest {
+
+    /**
+     * Tests that repeat lookups of a key are served from the cache and counted
+     * as hits.
+     */
+    @Test
+    void testRepeatLookupsHitCache() throws Exception {
+        PublicKeyCache cache = new PublicKeyCache(8);
+        Wallet wallet = new Wallet();
+        String encoded = wallet.getPublicKeyString();
+        assertEquals(wallet.getPublicKey(), cache.get(encoded), "Parsed key should equal the wallet's key.");
+        assertSame(cache.get(encoded), cache.get(encoded), "Repeat lookups should return the cached key.");
+        assertEquals(1, cache.getMissCount(), "Only the first lookup should miss.");
+        assertEquals(2, cache.getHitCount(), "Repeat lookups should hit.");
+    }
+
+    /**
+     * Tests that the cache never holds more keys than its capacity.
+     */
+    @Test
+    void testCapacityIsBounded() throws Exception {
+        PublicKeyCache cache = new PublicKeyCache(2);
+        for (int i = 0; i < 5; i++) {
+            cache.get(new Wallet().getPublicKeyString());
+        }
+        assertEquals(2, cache.size(), "Cache should stay within its capacity.");
+        assertEquals(3, cache.getEvictionCount(), "Overflowing keys should be evicted.");
+    }
+}
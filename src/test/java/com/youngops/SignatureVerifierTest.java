@@ -0,0 +1,41 @@
+package com.youngops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the SignatureVerifier class.
+ */
+class SignatureVerifierTest {
+
+    /**
+     * Tests that parallel verification accepts a list of valid signatures and
+     * rejects it once a single signature is invalid.
+     */
+    @Test
+    void testParallelVerification() {
+        Wallet signer = new Wallet();
+        Wallet attacker = new Wallet();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < SignatureVerifier.PARALLEL_THRESHOLD * 2; i++) {
+            Transaction tx = new Transaction("Alice", "Bob", i, signer.getPublicKey());
+            tx.signTransaction(signer.getPrivateKey());
+            transactions.add(tx);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SignatureVerifier verifier = new SignatureVerifier(executor, 4);
+            assertTrue(verifier.verifyAll(transactions), "All signatures should be valid.");
+            transactions.get(transactions.size() - 5).signTransaction(attacker.getPrivateKey());
+            assertFalse(verifier.verifyAll(transactions), "A forged signature should be detected.");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.youngops;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the transactions and blocks the tests work with. Blocks hold a
+ * mutable list of transactions, so tests can tamper with them.
+ */
+final class TestBlocks {
+
+    /**
+     * Compact target of one leading zero hex digit, met within a few dozen
+     * hashes.
+     */
+    static final int EASY_BITS = Difficulty.fromLeadingZeros(1);
+
+    private TestBlocks() {
+    }
+
+    /**
+     * Returns a transaction signed with the wallet's key.
+     *
+     * @param wallet the wallet signing the transaction
+     * @param sender the sender named in the transaction
+     * @param recipient the recipient of the transaction
+     * @param amount the amount transferred
+     * @return the signed transaction
+     */
+    static Transaction signed(Wallet wallet, String sender, String recipient, int amount) {
+        Transaction tx = new Transaction(sender, recipient, amount, wallet.getPublicKey());
+        tx.signTransaction(wallet.getPrivateKey());
+        return tx;
+    }
+
+    /**
+     * Returns transactions from Alice to Bob, one per amount, all signed with
+     * the key of a new wallet.
+     *
+     * @param amounts the amounts transferred
+     * @return a mutable list of the signed transactions
+     */
+    static List<Transaction> signedTransactions(int... amounts) {
+        Wallet wallet = new Wallet();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int amount : amounts) {
+            transactions.add(signed(wallet, "Alice", "Bob", amount));
+        }
+        return transactions;
+    }
+
+    /**
+     * Returns an unsigned transaction like the one the genesis block holds.
+     * Its amount tells otherwise equal blocks apart.
+     *
+     * @param amount the amount of the transaction
+     * @return the unsigned transaction
+     */
+    static Transaction unsigned(int amount) {
+        return new Transaction("Genesis", "System", amount, null);
+    }
+
+    /**
+     * Returns an unmined block holding the given list itself.
+     *
+     * @param index the height of the block
+     * @param previousHash the hash of its parent
+     * @param transactions the transactions of the block
+     * @return the block
+     */
+    static Block block(int index, String previousHash, List<Transaction> transactions) {
+        return new Block(index, transactions, previousHash);
+    }
+
+    /**
+     * Returns an unmined block holding the given transactions.
+     *
+     * @param index the height of the block
+     * @param previousHash the hash of its parent
+     * @param transactions the transactions of the block
+     * @return the block
+     */
+    static Block block(int index, String previousHash, Transaction... transactions) {
+        return block(index, previousHash, new ArrayList<>(List.of(transactions)));
+    }
+
+    /**
+     * Returns an unmined block on top of a parent.
+     *
+     * @param parent the parent block
+     * @param transactions the transactions of the block
+     * @return the block
+     */
+    static Block next(Block parent, Transaction... transactions) {
+        return block(parent.getIndex() + 1, parent.getHash(), transactions);
+    }
+
+    /**
+     * Returns an unmined block on top of the tip of a chain.
+     *
+     * @param blockchain the chain to extend
+     * @param transactions the transactions of the block
+     * @return the block
+     */
+    static Block next(Blockchain blockchain, Transaction... transactions) {
+        List<Block> chain = blockchain.getChain();
+        return next(chain.get(chain.size() - 1), transactions);
+    }
+
+    /**
+     * Mines a block against a compact target on the shared miner.
+     *
+     * @param block the block to mine
+     * @param bits the compact target
+     * @return the same block, mined
+     */
+    static Block mine(Block block, int bits) {
+        block.mineBlockToTarget(bits, BlockMiner.getDefault());
+        return block;
+    }
+
+    /**
+     * Returns a block mined on top of a parent.
+     *
+     * @param parent the parent block
+     * @param bits the compact target
+     * @param transactions the transactions of the block
+     * @return the mined block
+     */
+    static Block mined(Block parent, int bits, Transaction... transactions) {
+        return mine(next(parent, transactions), bits);
+    }
+
+    /**
+     * Returns a block mined on top of a parent with a chosen timestamp. It
+     * holds a small coinbase so that blocks differing only in their timestamp
+     * stay apart.
+     *
+     * @param parent the parent block
+     * @param timestamp the timestamp of the block
+     * @param bits the compact target
+     * @return the mined block
+     */
+    static Block stamped(Block parent, long timestamp, int bits) {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(Transaction.coinbase(parent.getIndex() + 1, "Alice", 1));
+        Block block = new Block(parent.getIndex() + 1, timestamp, transactions, parent.getHash(),
+                MerkleTree.ofTransactions(transactions).getMerkleRoot(), bits, 0, null);
+        return mine(block, bits);
+    }
+
+    /**
+     * Returns a block whose target is zero, which no realistic hash meets.
+     *
+     * @return the block
+     */
+    static Block hopeless() {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(unsigned(0));
+        return new Block(1, System.currentTimeMillis(), transactions, Block.ZERO_HASH,
+                MerkleTree.ofTransactions(transactions).getMerkleRoot(), Difficulty.toBits(BigInteger.ZERO), 0, null);
+    }
+}
@@ -0,0 +1,51 @@
+package com.youngops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the TransactionSigner class.
+ */
+class TransactionSignerTest {
+
+    /**
+     * Tests that a parallel batch signs every transaction it can and reports
+     * the one it cannot without aborting the rest.
+     */
+    @Test
+    void testParallelBatchReportsFailuresPerItem() {
+        Wallet signer = new Wallet();
+        List<TransactionSigner.Request> requests = new ArrayList<>();
+        for (int i = 0; i < TransactionSigner.PARALLEL_THRESHOLD * 2; i++) {
+            Transaction tx = new Transaction("Alice", "Bob", i, signer.getPublicKey());
+            requests.add(new TransactionSigner.Request(tx, i == 7 ? null : signer.getPrivateKey()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TransactionSigner.Result result = new TransactionSigner(executor, 4).signAll(requests);
+            assertEquals(requests.size() - 1, result.getSignedCount(), "Every other transaction should be signed.");
+            assertEquals(1, result.getFailureCount(), "The missing key should be the only failure.");
+            assertNotNull(result.getFailure(7), "The failure should be reported at its position.");
+            assertEquals(List.of(7), List.copyOf(result.getFailures().keySet()), "Only position 7 should fail.");
+
+            List<Transaction> signed = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                if (i != 7) {
+                    assertNull(result.getFailure(i), "Signed positions should have no failure.");
+                    signed.add(requests.get(i).getTransaction());
+                }
+            }
+            assertTrue(new SignatureVerifier(executor, 4).verifyAll(signed), "Batch signatures should verify.");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,8 +2,12 @@ package com.youngops;
 
 import java.security.PrivateKey;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
@@ -39,4 +43,50 @@ class TransactionTest {
         tx.signTransaction(attackerWallet.getPrivateKey());
         assertFalse(tx.verifySignature(), "Signature should be invalid after tampering.");
     }
+
+    /**
+     * Tests that names longer than 65535 bytes of UTF-8 sign, hash, survive
+     * the binary encoding and verify.
+     */
+    @Test
+    void testLongNames() {
+        Wallet wallet = new Wallet();
+        // Two bytes per character in UTF-8, so 80 000 bytes.
+        String sender = "\u00e4".repeat(40_000);
+        Transaction tx = new Transaction(sender, "Bob", 1, wallet.getPublicKey());
+        tx.signTransaction(wallet.getPrivateKey());
+        assertTrue(tx.verifySignature(), "A long name should sign and verify.");
+        Transaction decoded = BlockCodec.decodeTransaction(BlockCodec.encode(tx));
+        assertEquals(sender, decoded.getSender(), "The name should survive the binary encoding.");
+        assertEquals(tx.getId(), decoded.getId(), "A decoded copy should have the same id.");
+        assertNotEquals(tx.getId(), new Transaction(sender + "x", "Bob", 1, tx.getSenderPublicKey(),
+                tx.getSignature()).getId(), "A longer name should change the id.");
+        assertTrue(decoded.verifySignature(), "A decoded copy should verify.");
+    }
+
+    /**
+     * Tests that the signed payload is unambiguous and that the id is cached
+     * until the transaction is signed again.
+     */
+    @Test
+    void testCanonicalPayloadAndCachedId() {
+        Wallet wallet = new Wallet();
+        Transaction ab = new Transaction("ab", "c", 1, wallet.getPublicKey());
+        Transaction bc = new Transaction("a", "bc", 1, wallet.getPublicKey());
+        assertNotEquals(StringUtil.toHex(ab.getSigningPayload()), StringUtil.toHex(bc.getSigningPayload()),
+                "Shifting characters between fields should change the payload.");
+        ab.signTransaction(wallet.getPrivateKey());
+        bc.signTransaction(wallet.getPrivateKey());
+        assertNotEquals(ab.getSignature(), bc.getSignature(), "The signatures should differ.");
+
+        String id = ab.getId();
+        assertSame(ab.getIdBytes(), ab.getIdBytes(), "The id should be cached.");
+        assertEquals(id, ab.calculateHash(), "The hash should be the id.");
+        Transaction decoded = BlockCodec.decodeTransaction(BlockCodec.encode(ab));
+        assertArrayEquals(ab.getIdBytes(), decoded.getIdBytes(), "A decoded copy should have the same id.");
+        assertTrue(decoded.verifySignature(), "A decoded copy should verify.");
+
+        ab.signTransaction(new Wallet().getPrivateKey());
+        assertNotEquals(id, ab.getId(), "Signing again should change the id.");
+    }
 }